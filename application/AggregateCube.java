@@ -0,0 +1,201 @@
+package application;
+
+import java.util.Arrays;
+
+/**
+ * A farm x year x month table of weight totals. Years are keyed sparsely: only the years that
+ * have been added to are held, each as one primitive long array laid out farm by farm, so the
+ * twelve months of every farm in a year sit in one contiguous run. A stray year far from the rest,
+ * such as a typo, costs one more year rather than every year in between. Cells that were never
+ * added to read as 0.
+ * 
+ * <p>Every farm-year and every year also carries a version number, bumped on each add that
+ * changes a total, so that anything computed from the cube can tell exactly when it has gone
+ * stale.
+ */
+public class AggregateCube {
+  private static final int MONTHS = 12;
+  private static final int DEFAULT_FARM_CAPACITY = 16;
+  private int[] years; // the years held, in ascending order; only the first yearCount are used
+  private long[][] totals; // the totals of each year held, at farmIndex * 12 + month
+  private int[][] versions; // the version of every farm-year, by year held then farm index
+  private int[] yearVersions; // the version of every year held
+  private int farmCapacity; // the number of farms each year has room for
+  private int yearCount; // the number of years held
+  
+  /**
+   * Constructs a new empty AggregateCube.
+   */
+  public AggregateCube() {
+    years = new int[0];
+    totals = new long[0][];
+    versions = new int[0][];
+    yearVersions = new int[0];
+    farmCapacity = DEFAULT_FARM_CAPACITY;
+  }
+  
+  /**
+   * Adds a weight to the total of a cell, growing the cube if the farm or year is new. Adding 0
+   * changes nothing, so it leaves the versions as they are.
+   * @param farmIndex the index of the farm
+   * @param year the year
+   * @param month the month, from 0-11
+   * @param weight the weight to add
+   */
+  public void add(int farmIndex, int year, int month, long weight) {
+    if (weight == 0) {
+      return;
+    }
+    ensureFarm(farmIndex);
+    int offset = ensureYear(year);
+    totals[offset][farmIndex * MONTHS + month] += weight;
+    versions[offset][farmIndex]++;
+    yearVersions[offset]++;
+  }
+  
+  /**
+   * Returns the version of a farm-year, which changes every time one of its cells is added to.
+   * @param farmIndex the index of the farm
+   * @param year the year
+   * @return the version of the farm-year, or 0 if nothing was ever added to it
+   */
+  public int getVersion(int farmIndex, int year) {
+    int offset = offsetOf(year);
+    if (offset < 0 || farmIndex >= farmCapacity) {
+      return 0;
+    }
+    return versions[offset][farmIndex];
+  }
+  
+  /**
+   * Returns the version of a year, which changes every time a cell of any farm in it is added to.
+   * @param year the year
+   * @return the version of the year, or 0 if nothing was ever added to it
+   */
+  public int getYearVersion(int year) {
+    int offset = offsetOf(year);
+    if (offset < 0) {
+      return 0;
+    }
+    return yearVersions[offset];
+  }
+  
+  /**
+   * Returns the total of a cell.
+   * @param farmIndex the index of the farm
+   * @param year the year
+   * @param month the month, from 0-11
+   * @return the total of the cell, or 0 if nothing was added to it
+   */
+  public long get(int farmIndex, int year, int month) {
+    int offset = offsetOf(year);
+    if (offset < 0 || farmIndex >= farmCapacity) {
+      return 0;
+    }
+    return totals[offset][farmIndex * MONTHS + month];
+  }
+  
+  /**
+   * Copies the twelve monthly totals of a farm in a year.
+   * @param farmIndex the index of the farm
+   * @param year the year
+   * @param dest the array to copy the totals into, from January to December
+   */
+  public void copyMonths(int farmIndex, int year, long[] dest) {
+    int offset = offsetOf(year);
+    if (offset < 0 || farmIndex >= farmCapacity) {
+      Arrays.fill(dest, 0, MONTHS, 0);
+      return;
+    }
+    System.arraycopy(totals[offset], farmIndex * MONTHS, dest, 0, MONTHS);
+  }
+  
+  /**
+   * Returns every year held.
+   * @return the years, in ascending order
+   */
+  int[] getYears() {
+    return Arrays.copyOf(years, yearCount);
+  }
+  
+  /**
+   * Copies the monthly totals of the first farms in a year, twelve per farm.
+   * @param year the year to copy, which must be held
+   * @param farmCount the number of farms to copy
+   * @return the totals, at farmIndex * 12 + month; farms beyond the capacity of the cube are left
+   *    out, since nothing was ever added to them
+   */
+  long[] copyYear(int year, int farmCount) {
+    return Arrays.copyOf(totals[offsetOf(year)], Math.min(farmCount, farmCapacity) * MONTHS);
+  }
+  
+  /**
+   * Copies the versions of the first farms in a year.
+   * @param year the year to copy, which must be held
+   * @param farmCount the number of farms to copy
+   * @return the versions, by farm index; farms beyond the capacity of the cube are left out
+   */
+  int[] copyYearVersions(int year, int farmCount) {
+    return Arrays.copyOf(versions[offsetOf(year)], Math.min(farmCount, farmCapacity));
+  }
+  
+  /**
+   * Returns where a year is held.
+   * @param year the year
+   * @return the offset of the year among those held, or a negative number if it is not held
+   */
+  private int offsetOf(int year) {
+    return Arrays.binarySearch(years, 0, yearCount, year);
+  }
+  
+  /**
+   * Makes room for a year, inserting it among the years held in order if it is new.
+   * @param year the year to make room for
+   * @return the offset of the year among those held
+   */
+  private int ensureYear(int year) {
+    int offset = offsetOf(year);
+    if (offset >= 0) {
+      return offset;
+    }
+    offset = -offset - 1;
+    if (yearCount == years.length) {
+      int capacity = Math.max(4, yearCount * 2);
+      years = Arrays.copyOf(years, capacity);
+      totals = Arrays.copyOf(totals, capacity);
+      versions = Arrays.copyOf(versions, capacity);
+      yearVersions = Arrays.copyOf(yearVersions, capacity);
+    }
+    int moved = yearCount - offset; // the years after the new one
+    System.arraycopy(years, offset, years, offset + 1, moved);
+    System.arraycopy(totals, offset, totals, offset + 1, moved);
+    System.arraycopy(versions, offset, versions, offset + 1, moved);
+    System.arraycopy(yearVersions, offset, yearVersions, offset + 1, moved);
+    years[offset] = year;
+    totals[offset] = new long[farmCapacity * MONTHS];
+    versions[offset] = new int[farmCapacity];
+    yearVersions[offset] = 0;
+    yearCount++;
+    return offset;
+  }
+  
+  /**
+   * Makes room for a farm, doubling the number of farms each year has room for as needed.
+   * @param farmIndex the index of the farm to make room for
+   */
+  private void ensureFarm(int farmIndex) {
+    if (farmIndex < farmCapacity) {
+      return;
+    }
+    int capacity = farmCapacity;
+    while (capacity <= farmIndex) {
+      capacity *= 2;
+    }
+    
+    for (int offset = 0; offset < yearCount; offset++) {
+      totals[offset] = Arrays.copyOf(totals[offset], capacity * MONTHS);
+      versions[offset] = Arrays.copyOf(versions[offset], capacity);
+    }
+    farmCapacity = capacity;
+  }
+}
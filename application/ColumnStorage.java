@@ -0,0 +1,61 @@
+package application;
+
+import java.time.LocalDate;
+
+/**
+ * Holds the weights of a FarmYear as rows in columns shared by every FarmYear of a
+ * FarmCollection, remembering which rows belong to each month.
+ */
+class ColumnStorage implements YearStorage {
+  private MilkColumns columns; // the columns holding the rows
+  private IntList[] monthRows; // the rows in columns belonging to each month
+  
+  /**
+   * Constructs a new empty ColumnStorage.
+   * @param columns the columns to store rows in
+   */
+  ColumnStorage(MilkColumns columns) {
+    this.columns = columns;
+    monthRows = new IntList[12];
+    for (int month = 0; month < monthRows.length; month++) {
+      monthRows[month] = new IntList();
+    }
+  }
+  
+  /**
+   * Stores a weight as a new row.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @param farmId the name of the farm the weight belongs to; not stored, since every row of a
+   *    FarmYear belongs to the same farm
+   */
+  @Override
+  public void add(int year, int month, int day, int weight, String farmId) {
+    monthRows[month].add(columns.add(MilkColumns.toEpochDay(year, month, day), weight));
+  }
+  
+  /**
+   * Returns the day of the month of the row at a position.
+   * @param month the month of the row, from 0-11
+   * @param position the position of the row within the month
+   * @return the day of the month
+   */
+  @Override
+  public int dayAt(int month, int position) {
+    return LocalDate.ofEpochDay(columns.getEpochDay(monthRows[month].get(position)))
+        .getDayOfMonth();
+  }
+  
+  /**
+   * Returns the weight of the row at a position.
+   * @param month the month of the row, from 0-11
+   * @param position the position of the row within the month
+   * @return the weight
+   */
+  @Override
+  public int weightAt(int month, int position) {
+    return columns.getWeight(monthRows[month].get(position));
+  }
+}
@@ -0,0 +1,278 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A FarmCollection that any number of threads may add to and report on at once. Farms are
+ * striped by farm ID across several FarmCollections, each guarded by its own read-write lock,
+ * so writers only contend when their farms share a stripe and readers only wait for the stripe
+ * they are reading. Collection-wide totals are kept in LongAdders and never take a lock.
+ * 
+ * <p>Reports of every farm list the farms stripe by stripe, in the order each stripe first saw
+ * them, rather than in the order they were first added overall. Reports read only running totals
+ * and the aggregate cube, never anything a FarmYear builds lazily, so readers sharing a stripe's
+ * read lock cannot race each other.
+ * 
+ * <p>The application itself loads files through FarmCollection and FarmIngestor; this class is
+ * for code that adds weights from threads of its own.
+ */
+public class ConcurrentFarmCollection {
+  private static final int STRIPES_PER_THREAD = 4;
+  private FarmCollection[] stripes; // the farms, spread by the hash of their farm ID
+  private ReentrantReadWriteLock[] locks; // the lock guarding each stripe
+  private int stripeMask; // the number of stripes less one; the number of stripes is a power of 2
+  private LongAdder weightSum; // the sum of every weight added
+  private LongAdder rowCount; // the number of weights added
+  private ThreadLocal<FarmDictionary> dictionaries; // the dictionary each thread parses files with
+  
+  /**
+   * Constructs a new empty ConcurrentFarmCollection storing MilkStats as objects, with enough
+   * stripes for every available processor.
+   */
+  public ConcurrentFarmCollection() {
+    this(false);
+  }
+  
+  /**
+   * Constructs a new empty ConcurrentFarmCollection with enough stripes for every available
+   * processor.
+   * @param columnar whether each stripe stores its rows in primitive columns
+   */
+  public ConcurrentFarmCollection(boolean columnar) {
+    this(columnar, Runtime.getRuntime().availableProcessors() * STRIPES_PER_THREAD);
+  }
+  
+  /**
+   * Constructs a new empty ConcurrentFarmCollection.
+   * @param columnar whether each stripe stores its rows in primitive columns
+   * @param stripes the least number of stripes to spread farms across; rounded up to a power of 2
+   */
+  public ConcurrentFarmCollection(boolean columnar, int stripes) {
+    int count = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    this.stripes = new FarmCollection[count];
+    locks = new ReentrantReadWriteLock[count];
+    for (int i = 0; i < count; i++) {
+      this.stripes[i] = new FarmCollection(columnar);
+      locks[i] = new ReentrantReadWriteLock();
+    }
+    stripeMask = count - 1;
+    weightSum = new LongAdder();
+    rowCount = new LongAdder();
+    dictionaries = ThreadLocal.withInitial(FarmDictionary::new);
+  }
+  
+  /**
+   * Adds a MilkStat to the Farm it belongs to. Safe to call from any thread.
+   * @param ms the MilkStat to be added
+   */
+  public void addMilkStat(MilkStat ms) {
+    int stripe = stripeOf(ms.getFarmId());
+    Lock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      stripes[stripe].addMilkStat(ms);
+    }
+    finally {
+      lock.unlock();
+    }
+    weightSum.add(ms.getWeight());
+    rowCount.increment();
+  }
+  
+  /**
+   * Adds a weight given as primitives to the Farm it belongs to. Safe to call from any thread.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param farmId the name of the farm the weight belongs to
+   * @param weight the weight of milk recorded
+   */
+  public void addMilkWeight(int year, int month, int day, String farmId, int weight) {
+    int stripe = stripeOf(farmId);
+    Lock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      stripes[stripe].addMilkWeight(year, month, day, farmId, weight);
+    }
+    finally {
+      lock.unlock();
+    }
+    weightSum.add(weight);
+    rowCount.increment();
+  }
+  
+  /**
+   * Parses a CSV file of MilkStats with FarmParser's memory-mapped parser, adding each row as it
+   * is read. Several threads may each add a different file at once. FarmDictionary is not safe
+   * to share between threads, so each thread keeps its own and reuses it for every file it adds,
+   * and farm IDs it has seen before need no String to be built.
+   * @param file the CSV file to read
+   * @return the number of rows added
+   * @throws IOException if the file could not be read or a row is malformed
+   */
+  public long addMappedFile(File file) throws IOException {
+    return FarmParser.parseMapped(file, dictionaries.get(), this::addMilkWeight);
+  }
+  
+  /**
+   * Returns the sum of every weight added, without locking. While other threads are adding, the
+   * sum may include some of their weights and not others.
+   * @return the sum of all weights of milk
+   */
+  public long sumOfAllFarmWeights() {
+    return weightSum.sum();
+  }
+  
+  /**
+   * Returns the number of weights added, without locking.
+   * @return the number of weights
+   */
+  public long getRowCount() {
+    return rowCount.sum();
+  }
+  
+  /**
+   * Returns the number of Farms across every stripe.
+   * @return the number of Farms
+   */
+  public int getFarmCount() {
+    int count = 0;
+    for (int stripe = 0; stripe < stripes.length; stripe++) {
+      Lock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        count += stripes[stripe].getFarmCollection().size();
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return count;
+  }
+  
+  /**
+   * Builds a report of the weight of one farm, per month, for a given year.
+   * @param farmId the name of the farm to draw data from
+   * @param year the year to draw data from
+   * @return the report, or null if there is no such farm
+   */
+  public MilkReport farmReport(String farmId, int year) {
+    return farmReport(farmId, year, -1);
+  }
+  
+  /**
+   * Builds a report of the weight of one farm for a given year and month.
+   * @param farmId the name of the farm to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from, from 0-11
+   * @return the report, or null if there is no such farm
+   */
+  public MilkReport monthlyFarmReport(String farmId, int year, int month) {
+    return farmReport(farmId, year, month);
+  }
+  
+  /**
+   * Builds a report of one farm while holding the read lock of its stripe.
+   * @param farmId the name of the farm
+   * @param year the year of the report
+   * @param month the month of the report, or -1 for the whole year
+   * @return the report, or null if there is no such farm
+   */
+  private MilkReport farmReport(String farmId, int year, int month) {
+    int stripe = stripeOf(farmId);
+    Lock lock = locks[stripe].readLock();
+    lock.lock();
+    try {
+      Farm farm = stripes[stripe].getFarm(farmId);
+      if (farm == null) {
+        return null;
+      }
+      if (month < 0) {
+        return MilkReport.farmReport(farm, year);
+      }
+      return MilkReport.monthlyFarmReport(farm, year, month);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Builds a report of the weight of every farm, per month, for a given year. Each stripe is
+   * read under its own read lock, one after another, so the report is consistent within each
+   * stripe.
+   * @param year the year to draw data from
+   * @return a report with a series per farm and a category per month
+   */
+  public MilkReport farmCollectionReport(int year) {
+    List<MilkReport> parts = new ArrayList<MilkReport>(stripes.length);
+    for (int stripe = 0; stripe < stripes.length; stripe++) {
+      Lock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        parts.add(MilkReport.farmCollectionReport(stripes[stripe], year));
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return MilkReport.joinSeries(parts);
+  }
+  
+  /**
+   * Builds a report of the weight of every farm for a given year and month.
+   * @param year the year to draw data from
+   * @param month the month to draw data from, from 0-11
+   * @return a report with one series and a category per farm
+   */
+  public MilkReport monthlyFarmCollectionReport(int year, int month) {
+    List<MilkReport> parts = new ArrayList<MilkReport>(stripes.length);
+    for (int stripe = 0; stripe < stripes.length; stripe++) {
+      Lock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        parts.add(MilkReport.monthlyFarmCollectionReport(stripes[stripe], year, month));
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return MilkReport.joinCategories(parts);
+  }
+  
+  /**
+   * Copies every Farm into a new, single-threaded FarmCollection, one stripe at a time.
+   * @param columnar whether the copy stores its rows in primitive columns
+   * @return a FarmCollection holding every MilkStat added so far
+   */
+  public FarmCollection toFarmCollection(boolean columnar) {
+    FarmCollection copy = new FarmCollection(columnar);
+    for (int stripe = 0; stripe < stripes.length; stripe++) {
+      Lock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        copy.merge(stripes[stripe]);
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return copy;
+  }
+  
+  /**
+   * Returns the stripe a farm belongs to.
+   * @param farmId the name of the farm
+   * @return the index of the stripe
+   */
+  private int stripeOf(String farmId) {
+    int h = farmId.hashCode();
+    return (h ^ (h >>> 16)) & stripeMask;
+  }
+}
@@ -0,0 +1,191 @@
+package application;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The data behind a daily report: the weight of milk recorded on every day of a run of years.
+ * A few years hold more days than a chart is wide, so the days are downsampled to the width of
+ * the chart before any chart nodes are created. Building a report needs no JavaFX; MilkGraph turns
+ * a DailyReport into a LineChart for the GUI.
+ */
+public class DailyReport {
+  private String name; // the name of the series
+  private LocalDate firstDate; // the date of day 0
+  private long[] values; // the weight recorded on each day, from firstDate
+  
+  /**
+   * Constructs a new DailyReport with every day's weight set to 0.
+   * @param name the name of the series
+   * @param fromYear the first year the report covers
+   * @param toYear the last year the report covers
+   * @throws IllegalArgumentException if toYear is before fromYear
+   */
+  public DailyReport(String name, int fromYear, int toYear) {
+    if (toYear < fromYear) {
+      throw new IllegalArgumentException("The last year cannot be before the first.");
+    }
+    this.name = name;
+    this.firstDate = LocalDate.of(fromYear, 1, 1);
+    this.values = new long[(int) ChronoUnit.DAYS.between(firstDate,
+        LocalDate.of(toYear + 1, 1, 1))];
+  }
+  
+  /**
+   * Builds a report of the weight of one farm, per day, over a run of years.
+   * @param farm the farm to draw data from
+   * @param fromYear the first year to draw data from
+   * @param toYear the last year to draw data from
+   * @return a report with a value for every day of the years
+   * @throws IllegalArgumentException if toYear is before fromYear
+   */
+  public static DailyReport farmReport(Farm farm, int fromYear, int toYear) {
+    DailyReport report = new DailyReport(farm.getFarmId(), fromYear, toYear);
+    report.addFarm(farm, fromYear, toYear);
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of every farm, per day, over a run of years.
+   * @param fc the FarmCollection representing the farms to draw data from
+   * @param fromYear the first year to draw data from
+   * @param toYear the last year to draw data from
+   * @return a report with a value for every day of the years
+   * @throws IllegalArgumentException if toYear is before fromYear
+   */
+  public static DailyReport farmCollectionReport(FarmCollection fc, int fromYear, int toYear) {
+    DailyReport report = new DailyReport("All farms", fromYear, toYear);
+    for (Farm f : fc.getFarmCollection()) {
+      report.addFarm(f, fromYear, toYear);
+    }
+    return report;
+  }
+  
+  /**
+   * Adds the daily weights of a farm's years to this report.
+   * @param farm the farm to draw data from
+   * @param fromYear the first year to draw data from
+   * @param toYear the last year to draw data from
+   */
+  private void addFarm(Farm farm, int fromYear, int toYear) {
+    for (int year = fromYear; year <= toYear; year++) {
+      FarmYear fy = farm.findYear(year);
+      if (fy != null) {
+        fy.addDailyWeights(values, indexOf(LocalDate.of(year, 1, 1)));
+      }
+    }
+  }
+  
+  /**
+   * Picks the days that best preserve the shape of a range of this report when it is drawn with
+   * only a few points, using the Largest-Triangle-Three-Buckets algorithm. The first and last days
+   * are always picked; the days between are split into equal buckets, and from each bucket the day
+   * forming the largest triangle with the day picked before it and the average of the next bucket
+   * is picked. Takes O(to - from) time however few points are asked for.
+   * @param from the first day of the range
+   * @param to the day after the last day of the range
+   * @param points the largest number of days to pick, such as the width of the chart in pixels
+   * @return the picked days, in order; every day of the range if there are no more than points
+   * @throws IllegalArgumentException if the range is not within the report or points is less
+   *    than 3
+   */
+  public int[] downsample(int from, int to, int points) {
+    if (from < 0 || to > values.length || from > to) {
+      throw new IllegalArgumentException("The range must be within the report.");
+    }
+    if (points < 3) {
+      throw new IllegalArgumentException("At least 3 points must be picked.");
+    }
+    int length = to - from;
+    if (length <= points) {
+      int[] days = new int[length];
+      for (int i = 0; i < length; i++) {
+        days[i] = from + i;
+      }
+      return days;
+    }
+    
+    int[] days = new int[points];
+    double bucketSize = (double) (length - 2) / (points - 2); // days between first and last
+    int picked = from;
+    days[0] = from;
+    for (int bucket = 0; bucket < points - 2; bucket++) {
+      int start = from + 1 + (int) (bucket * bucketSize);
+      int end = from + 1 + (int) ((bucket + 1) * bucketSize);
+      int nextEnd = Math.min(to, from + 1 + (int) ((bucket + 2) * bucketSize));
+      
+      double averageDay = 0; // the average of the next bucket, or the last day
+      double averageValue = 0;
+      if (bucket == points - 3) {
+        averageDay = to - 1;
+        averageValue = values[to - 1];
+      }
+      else {
+        for (int day = end; day < nextEnd; day++) {
+          averageDay += day;
+          averageValue += values[day];
+        }
+        averageDay /= nextEnd - end;
+        averageValue /= nextEnd - end;
+      }
+      
+      double largestArea = -1;
+      int best = start;
+      for (int day = start; day < end; day++) { // twice the triangle's area, which ranks the same
+        double area = Math.abs((picked - averageDay) * (values[day] - values[picked])
+            - (picked - day) * (averageValue - values[picked]));
+        if (area > largestArea) {
+          largestArea = area;
+          best = day;
+        }
+      }
+      days[bucket + 1] = best;
+      picked = best;
+    }
+    days[points - 1] = to - 1;
+    return days;
+  }
+  
+  /**
+   * Returns the name of this report's series.
+   * @return the name of the series
+   */
+  public String getName() {
+    return name;
+  }
+  
+  /**
+   * Returns the number of days this report covers.
+   * @return the number of days
+   */
+  public int getDayCount() {
+    return values.length;
+  }
+  
+  /**
+   * Returns the date of a day of this report.
+   * @param day the day, from 0 for January 1st of the first year
+   * @return the date
+   */
+  public LocalDate getDate(int day) {
+    return firstDate.plusDays(day);
+  }
+  
+  /**
+   * Returns the day of this report a date falls on.
+   * @param date the date
+   * @return the day, from 0 for January 1st of the first year; outside the report if the date is
+   */
+  public int indexOf(LocalDate date) {
+    return (int) ChronoUnit.DAYS.between(firstDate, date);
+  }
+  
+  /**
+   * Returns the weight recorded on a day.
+   * @param day the day, from 0 for January 1st of the first year
+   * @return the weight
+   */
+  public long getValue(int day) {
+    return values[day];
+  }
+}
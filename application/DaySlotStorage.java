@@ -0,0 +1,131 @@
+package application;
+
+/**
+ * Holds at most one weight per day of a FarmYear, in a fixed array of 366 slots laid out as a
+ * leap year, with a bit per slot recording whether it holds a weight. The weight of a day can be
+ * found, changed and removed in O(1) time.
+ */
+class DaySlotStorage implements YearStorage {
+  private int[] dayWeights; // the weight recorded on each day of the year
+  private long[] presentDays; // a bit per day of the year, set if dayWeights holds its weight
+  
+  /**
+   * Constructs a new empty DaySlotStorage.
+   */
+  DaySlotStorage() {
+    dayWeights = new int[FarmYear.DAYS_IN_YEAR];
+    presentDays = new long[(FarmYear.DAYS_IN_YEAR + 63) / 64];
+  }
+  
+  /**
+   * Stores a weight in the slot of a day that holds none yet.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @param farmId the name of the farm the weight belongs to; not stored
+   */
+  @Override
+  public void add(int year, int month, int day, int weight, String farmId) {
+    int slot = FarmYear.dayOfYear(month, day);
+    dayWeights[slot] = weight;
+    presentDays[slot >>> 6] |= 1L << slot;
+  }
+  
+  /**
+   * Returns the slot, counted from the start of the month, of every day of a month that holds a
+   * weight.
+   * @param month the month to list, from 0-11
+   * @param count the number of days of the month that hold a weight
+   * @return the positions of the weights
+   */
+  @Override
+  public int[] positionsInMonth(int month, int count) {
+    int[] positions = new int[count];
+    int start = FarmYear.dayOfYear(month, 1);
+    int i = 0;
+    for (int slot = start; i < count; slot++) {
+      if (isPresent(slot)) {
+        positions[i++] = slot - start;
+      }
+    }
+    return positions;
+  }
+  
+  /**
+   * Returns the day of the month of a position, which is its slot counted from the start of the
+   * month.
+   * @param month the month of the weight, from 0-11
+   * @param position the position of the weight within the month
+   * @return the day of the month
+   */
+  @Override
+  public int dayAt(int month, int position) {
+    return position + 1;
+  }
+  
+  /**
+   * Returns the weight held at a position.
+   * @param month the month of the weight, from 0-11
+   * @param position the position of the weight within the month
+   * @return the weight, or 0 if the slot no longer holds one
+   */
+  @Override
+  public int weightAt(int month, int position) {
+    return getWeightOnDay(month, position + 1);
+  }
+  
+  /**
+   * Returns whether a day holds a weight.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return whether the day holds a weight
+   */
+  @Override
+  public boolean hasWeightOnDay(int month, int day) {
+    return isPresent(FarmYear.dayOfYear(month, day));
+  }
+  
+  /**
+   * Returns the weight a day holds.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return the weight of the day, or 0 if it holds none
+   */
+  @Override
+  public int getWeightOnDay(int month, int day) {
+    return dayWeights[FarmYear.dayOfYear(month, day)];
+  }
+  
+  /**
+   * Changes the weight of a day that already holds one.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @param weight the new weight
+   */
+  @Override
+  public void setWeightOnDay(int month, int day, int weight) {
+    dayWeights[FarmYear.dayOfYear(month, day)] = weight;
+  }
+  
+  /**
+   * Removes the weight of a day, leaving its slot at 0.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   */
+  @Override
+  public void removeWeightOnDay(int month, int day) {
+    int slot = FarmYear.dayOfYear(month, day);
+    dayWeights[slot] = 0;
+    presentDays[slot >>> 6] &= ~(1L << slot);
+  }
+  
+  /**
+   * Returns whether a slot holds a weight.
+   * @param slot the slot
+   * @return whether the slot holds a weight
+   */
+  private boolean isPresent(int slot) {
+    return (presentDays[slot >>> 6] & (1L << slot)) != 0;
+  }
+}
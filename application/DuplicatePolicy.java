@@ -0,0 +1,19 @@
+package application;
+
+/**
+ * How a day-slotted FarmYear handles a weight for a day that already has one, such as when an
+ * overlapping file is loaded twice.
+ */
+public enum DuplicatePolicy {
+  /**
+   * The new weight is added to the one already recorded. A weight that would take the day's total
+   * past Integer.MAX_VALUE is refused with an IllegalArgumentException.
+   */
+  SUM,
+  
+  /** The new weight takes the place of the one already recorded. */
+  REPLACE,
+  
+  /** The new weight is refused with an IllegalArgumentException. */
+  REJECT
+}
@@ -1,6 +1,8 @@
 package application;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,8 +11,15 @@ import java.util.List;
  * @author Sean
  */
 public class Farm {
+  private static final int MAX_INDEX_SPAN = 1024; // the most years the index covers, first to last
   private String farmId; // the name of the farm
   private ArrayList<FarmYear> yearList; // the list of years under this farm
+  private FarmYear[] yearIndex; // every year in yearList, indexed by year - firstYear
+  private int firstYear; // the year held at index 0 of yearIndex
+  private int unindexed; // the number of FarmYears too far from the rest to be indexed
+  private MilkColumns columns; // the columns holding this farm's rows, if any
+  private int farmIndex; // the position of this farm in its columnar FarmCollection
+  private DuplicatePolicy policy; // how duplicate days are handled, if the years are day-slotted
   
   /**
    * Construct a new instance of Farm.
@@ -19,21 +28,128 @@ public class Farm {
   public Farm(String farmId) {
     this.farmId = farmId;
     yearList = new ArrayList<FarmYear>();
+    yearIndex = new FarmYear[0];
   }
   
   /**
-   * Add a MilkStat to the list of years under this farm.
+   * Construct a new instance of Farm whose MilkStats are stored as rows in the given columns.
+   * @param farmId the name of this farm
+   * @param columns the columns to store rows in
+   * @param farmIndex the position of this farm in the FarmCollection the columns belong to
+   */
+  Farm(String farmId, MilkColumns columns, int farmIndex) {
+    this(farmId);
+    this.columns = columns;
+    this.farmIndex = farmIndex;
+  }
+  
+  /**
+   * Construct a new instance of Farm whose years are day-slotted, holding at most one weight per
+   * day.
+   * @param farmId the name of this farm
+   * @param policy how to handle a weight for a day that already has one
+   */
+  public Farm(String farmId, DuplicatePolicy policy) {
+    this(farmId);
+    this.policy = policy;
+  }
+  
+  /**
+   * Add a MilkStat to the list of years under this farm. A MilkStat naming this farm is pointed
+   * at this farm's own farm ID, so that every MilkStat of the farm shares one String, however
+   * many copies of the farm ID were parsed.
    * @param ms the MilkStat to be added
+   * @return the amount the total weight of the farm changed by
+   * @throws IllegalArgumentException if the years are day-slotted with the REJECT policy and the
+   *    day already has a weight, or with the SUM policy and the day's total would overflow
    */
-  public void addMilkStat(MilkStat ms) {
+  public long addMilkStat(MilkStat ms) {
+    if (ms.getFarmId() != farmId && farmId.equals(ms.getFarmId())) {
+      ms.setFarmId(farmId);
+    }
     int year = ms.getYear();
     FarmYear fy = findYear(year); // add to the year if it already exists
     
     if (fy == null) { // otherwise create it
-      fy = new FarmYear(year);
+      fy = newYear(year);
       addYear(fy);
     }
-    fy.addMilkStat(ms);
+    return fy.addMilkStat(ms);
+  }
+  
+  /**
+   * Add a weight given as primitives to the list of years under this farm.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @return the amount the total weight of the farm changed by
+   * @throws IllegalArgumentException if the years are day-slotted with the REJECT policy and the
+   *    day already has a weight, or with the SUM policy and the day's total would overflow
+   */
+  public long addMilkWeight(int year, int month, int day, int weight) {
+    FarmYear fy = findYear(year); // add to the year if it already exists
+    
+    if (fy == null) { // otherwise create it
+      fy = newYear(year);
+      addYear(fy);
+    }
+    return fy.addMilkWeight(month, day, weight, farmId);
+  }
+  
+  /**
+   * Removes the weight recorded on a day. Only possible when the years are day-slotted.
+   * @param year the year of the day
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return the amount the total weight of the farm changed by, which is 0 if the day had no weight
+   * @throws UnsupportedOperationException if the years are not day-slotted
+   */
+  public long removeMilkWeight(int year, int month, int day) {
+    FarmYear fy = findYear(year);
+    if (fy == null) {
+      return 0;
+    }
+    return fy.removeMilkWeight(month, day);
+  }
+  
+  /**
+   * Hands every weight of this farm to a sink as primitives, year by year.
+   * @param sink the sink to receive each weight
+   */
+  public void forEachWeight(MilkSink sink) {
+    for (FarmYear fy : yearList) {
+      fy.forEachWeight(sink, farmId);
+    }
+  }
+  
+  /**
+   * Adds every MilkStat of another Farm to this one, year by year. The other Farm is not changed.
+   * @param other the Farm to copy MilkStats from
+   */
+  public void merge(Farm other) {
+    for (FarmYear otherYear : other.getYearList()) {
+      FarmYear fy = findYear(otherYear.getYear());
+      
+      if (fy == null) {
+        fy = newYear(otherYear.getYear());
+        addYear(fy);
+      }
+      fy.merge(otherYear, farmId);
+    }
+  }
+  
+  /**
+   * Checks that merge(other) would not be refused, without changing anything.
+   * @param other the Farm that would be merged
+   * @throws IllegalArgumentException if the years are day-slotted with the REJECT policy and other
+   *    has a second weight for some day, or with the SUM policy and some day's total would overflow
+   */
+  void checkMerge(Farm other) {
+    for (FarmYear otherYear : other.getYearList()) {
+      FarmYear fy = findYear(otherYear.getYear());
+      (fy == null ? newYear(otherYear.getYear()) : fy).checkMerge(otherYear);
+    }
   }
   
   /**
@@ -43,7 +159,22 @@ public class Farm {
    * @throws IllegalArgumentException if the year is already represented by another FarmYear
    */
   public void addYear(int year) {
-    addYear(new FarmYear(year));
+    addYear(newYear(year));
+  }
+  
+  /**
+   * Creates an empty FarmYear, backed by the same storage as this Farm.
+   * @param year the year the FarmYear represents
+   * @return the new FarmYear
+   */
+  private FarmYear newYear(int year) {
+    if (columns != null) {
+      return new FarmYear(year, this, columns);
+    }
+    if (policy != null) {
+      return new FarmYear(year, this, policy);
+    }
+    return new FarmYear(year);
   }
   
   /**
@@ -59,34 +190,104 @@ public class Farm {
       throw new IllegalArgumentException("Two FarmYears cannot represent the same year.");
     }
     yearList.add(fy);
+    indexYear(fy);
   }
   
   /**
-   * Return the FarmYear that represents a given year.
+   * Return the FarmYear that represents a given year. FarmYears are indexed by the year they
+   * represented when added, so changing the year of a FarmYear afterwards hides it from this method.
    * @param year the year to find the FarmYear for
    * @return the FarmYear that represents year
    */
   public FarmYear findYear(int year) {
-    for (FarmYear yr : yearList) {
-      if (yr.getYear() == year) {
-        return yr;
+    int offset = year - firstYear;
+    if (offset >= 0 && offset < yearIndex.length) {
+      FarmYear fy = yearIndex[offset];
+      if (fy != null && fy.getYear() == year) {
+        return fy;
+      }
+    }
+    if (unindexed > 0) { // a stray year may be held outside the index
+      for (FarmYear fy : yearList) {
+        if (fy.getYear() == year) {
+          return fy;
+        }
       }
     }
     return null;
   }
   
+  /**
+   * Places a FarmYear in the year index, growing the index in either direction if needed so that
+   * every year between the earliest and latest has a slot. A year that would stretch the index
+   * past MAX_INDEX_SPAN years, such as a typo far from the rest, is left out of it and found by
+   * searching yearList instead.
+   * @param fy the FarmYear to be indexed
+   */
+  private void indexYear(FarmYear fy) {
+    int year = fy.getYear();
+    if (yearIndex.length > 0 && Math.max((long) year - firstYear + 1,
+        (long) firstYear + yearIndex.length - year) > MAX_INDEX_SPAN) {
+      unindexed++;
+      return;
+    }
+    if (yearIndex.length == 0) {
+      yearIndex = new FarmYear[1];
+      firstYear = year;
+    }
+    else if (year < firstYear) {
+      FarmYear[] grown = new FarmYear[yearIndex.length + (firstYear - year)];
+      System.arraycopy(yearIndex, 0, grown, firstYear - year, yearIndex.length);
+      yearIndex = grown;
+      firstYear = year;
+    }
+    else if (year - firstYear >= yearIndex.length) {
+      yearIndex = Arrays.copyOf(yearIndex, year - firstYear + 1);
+    }
+    yearIndex[year - firstYear] = fy;
+  }
+  
   /**
    * Returns the sum of all weights of milk in every FarmYear.
    * @return the sum of all weights of milk
    */
-  public int sumOfAllWeights() {
-    int weightSum = 0;
+  public long sumOfAllWeights() {
+    long weightSum = 0;
     for (FarmYear fy : yearList) {
       weightSum += fy.sumOfWeightInYear();
     }
     return weightSum;
   }
   
+  /**
+   * Returns the sum of all weights of milk recorded between two dates, including both. Years
+   * wholly inside the range use their running totals and the years at either end are summed from
+   * their day totals, so this takes O(years + log days) time.
+   * @param from the first date to include
+   * @param to the last date to include
+   * @return the sum of the weights in the range, or 0 if to is before from
+   */
+  public long sumOfWeightBetween(LocalDate from, LocalDate to) {
+    long weightSum = 0;
+    for (FarmYear fy : yearList) {
+      int year = fy.getYear();
+      if (year < from.getYear() || year > to.getYear()) {
+        continue;
+      }
+      int fromMonth = year > from.getYear() ? 0 : from.getMonthValue() - 1;
+      int fromDay = year > from.getYear() ? 1 : from.getDayOfMonth();
+      int toMonth = year < to.getYear() ? 11 : to.getMonthValue() - 1;
+      int toDay = year < to.getYear() ? 31 : to.getDayOfMonth();
+      if (fromMonth == 0 && fromDay == 1 && toMonth == 11 && toDay == 31) {
+        weightSum += fy.sumOfWeightInYear();
+      }
+      else {
+        weightSum += fy.sumOfWeightBetween(fromMonth, fromDay, toMonth, toDay);
+      }
+    }
+    return weightSum;
+  }
+  
   /**
    * Returns the name of this Farm.
    * @return the name of the farm
@@ -103,6 +304,15 @@ public class Farm {
     this.farmId = farmId;
   }
   
+  /**
+   * Returns the position of this Farm in the FarmCollection whose columns it is stored in. Only
+   * meaningful for a Farm belonging to a columnar FarmCollection.
+   * @return the index of this farm
+   */
+  public int getFarmIndex() {
+    return farmIndex;
+  }
+  
   /**
    * Returns the list of FarmYears that this Farm represents.
    * @return the list of FarmYears
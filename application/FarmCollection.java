@@ -2,21 +2,70 @@ package application;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Collects multiple instances of the Farm object. The top level of data hierarchy for Milk Weights.
+ * A FarmCollection may only be changed and read by one thread at a time; other threads read the
+ * immutable views it publishes instead.
  * @author Sean
  */
 public class FarmCollection {
+  private static final int CHUNKS_PER_THREAD = 4; // spare chunks so idle workers can steal work
   private ArrayList<Farm> farmCollection; // the collection of farms stored in this FarmCollection
+  private ConcurrentHashMap<String, Integer> farmIndex; // the position of every farm, by farm ID
+  private AggregateCube cube; // monthly totals of every farm, by position and year
+  private MilkColumns columns; // the columns every MilkStat is stored in, if columnar
+  private FarmDictionary dictionary; // resolves farm IDs read by the memory-mapped parser
+  private DuplicatePolicy policy; // how duplicate days are handled, if the farms are day-slotted
+  private volatile FarmCollectionView view; // the most recently published view
   
   /**
    * Constructs a new empty FarmCollection.
    */
   public FarmCollection() {
     farmCollection = new ArrayList<Farm>();
+    farmIndex = new ConcurrentHashMap<String, Integer>();
+    dictionary = new FarmDictionary();
+    cube = new AggregateCube();
+    view = new FarmCollectionView(farmIndex, new String[0], 0, new int[0], new long[0][],
+        new int[0][], new int[0], 0, 0, 0);
+  }
+  
+  /**
+   * Constructs a new empty FarmCollection, optionally storing its data in columns of primitives
+   * rather than as MilkStat objects. A columnar FarmCollection uses a small fraction of the memory
+   * per MilkStat; the MilkStats returned by its Farms and FarmYears are built on demand.
+   * @param columnar true if data should be stored in columns
+   */
+  public FarmCollection(boolean columnar) {
+    this();
+    if (columnar) {
+      columns = new MilkColumns();
+    }
+  }
+  
+  /**
+   * Constructs a new empty FarmCollection whose farms keep at most one weight per day, in a fixed
+   * slot for each day of the year. Reloading a file that overlaps data already loaded then does
+   * not count any day twice; the policy decides what happens instead.
+   * @param policy how to handle a weight for a day that already has one
+   */
+  public FarmCollection(DuplicatePolicy policy) {
+    this();
+    this.policy = policy;
   }
   
   /**
@@ -25,7 +74,7 @@ public class FarmCollection {
    * @throws IOException if the file cannot be parsed
    */
   public FarmCollection(File file) throws IOException {
-    farmCollection = new ArrayList<Farm>();
+    this();
     addFile(file);
   }
   
@@ -35,27 +84,396 @@ public class FarmCollection {
    * @throws IOException if the file cannot be parsed
    */
   public void addFile(File file) throws IOException {
+    long start = System.nanoTime();
     FarmParser fp = new FarmParser(file);
     List<MilkStat> milkList = fp.parseFile();
     
     for (MilkStat ms : milkList) {
       addMilkStat(ms);
     }
+    MilkMetrics.FILE_INGEST.recordSince(start);
+  }
+  
+  /**
+   * Adds the contents of a new CSV to this FarmCollection leniently: lines that cannot be parsed
+   * are recorded in errors and skipped, and every other line is added.
+   * @param file the CSV to add the data for to this FarmCollection.
+   * @param errors records every line rejected
+   * @throws IOException if the file cannot be read
+   */
+  public void addFile(File file, ParseErrors errors) throws IOException {
+    long start = System.nanoTime();
+    FarmParser fp = new FarmParser(file);
+    for (MilkStat ms : fp.parseFile(errors)) {
+      addMilkStat(ms);
+    }
+    MilkMetrics.FILE_INGEST.recordSince(start);
+  }
+  
+  /**
+   * Adds the contents of a new CSV to this FarmCollection, using the memory-mapped parser. This
+   * is much faster than addFile, and a columnar FarmCollection builds no MilkStats at all.
+   * @param file the CSV to add the data for to this FarmCollection.
+   * @throws IOException if the file cannot be parsed
+   */
+  public void addMappedFile(File file) throws IOException {
+    addMappedFile(file, null);
+  }
+  
+  /**
+   * Adds the contents of a new CSV to this FarmCollection using the memory-mapped parser,
+   * leniently if errors is given: lines that cannot be parsed, or that the DuplicatePolicy
+   * rejects, are recorded in errors and skipped, and every other line is added.
+   * @param file the CSV to add the data for to this FarmCollection.
+   * @param errors records every line rejected, or null to stop at the first malformed line
+   * @throws IOException if the file cannot be read, or errors is null and it cannot be parsed
+   */
+  public void addMappedFile(File file, ParseErrors errors) throws IOException {
+    long start = System.nanoTime();
+    FarmParser.parseMapped(file, dictionary, this::addMilkWeight, errors);
+    MilkMetrics.FILE_INGEST.recordSince(start);
+  }
+  
+  /**
+   * Adds the contents of a new CSV to this FarmCollection, parsing it on every available core.
+   * The file is split into chunks at line breaks, each chunk is parsed into its own partial
+   * FarmCollection with this one's DuplicatePolicy, and once every chunk has been parsed the
+   * partials are merged in file order. The result is the same as addFile or addMappedFile would
+   * give, except that a file that cannot be parsed, or that would be refused, adds nothing.
+   * @param file the CSV to add the data for to this FarmCollection.
+   * @throws IOException if the file cannot be parsed, or its rows are refused by the
+   *    DuplicatePolicy
+   */
+  public void addParallelFile(File file) throws IOException {
+    long start = System.nanoTime();
+    List<FarmCollection> partials = new ArrayList<FarmCollection>();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      int parallelism = ForkJoinPool.getCommonPoolParallelism();
+      long[] bounds = FarmParser.splitAtLines(channel, parallelism * CHUNKS_PER_THREAD);
+      
+      List<ParseChunkTask> tasks = new ArrayList<ParseChunkTask>();
+      for (int chunk = 0; chunk + 1 < bounds.length; chunk++) {
+        ParseChunkTask task = new ParseChunkTask(channel, bounds[chunk], bounds[chunk + 1],
+            chunk == 0, newPartial());
+        ForkJoinPool.commonPool().execute(task);
+        tasks.add(task);
+      }
+      UncheckedIOException failure = null; // the first chunk that failed, thrown once all finish
+      for (ParseChunkTask task : tasks) { // every task finishes before the channel is closed
+        try {
+          partials.add(task.join());
+        }
+        catch (UncheckedIOException e) {
+          failure = failure == null ? e : failure;
+        }
+      }
+      if (failure != null) {
+        throw failure.getCause();
+      }
+    }
+    
+    try {
+      if (canRefuse()) { // chunks may repeat each other's days too
+        FarmCollection parsed = partials.get(0);
+        for (int chunk = 1; chunk < partials.size(); chunk++) {
+          parsed.merge(partials.get(chunk));
+        }
+        partials = List.of(parsed);
+      }
+      for (FarmCollection partial : partials) {
+        checkMerge(partial);
+      }
+    }
+    catch (IllegalArgumentException e) { // refused by the DuplicatePolicy; nothing was merged
+      throw new IOException(e.getMessage(), e);
+    }
+    for (FarmCollection partial : partials) {
+      merge(partial);
+    }
+    MilkMetrics.FILE_INGEST.recordSince(start);
+  }
+  
+  /**
+   * Adds the contents of several CSVs to this FarmCollection at once. Every file is parsed into
+   * its own partial FarmCollection on a separate thread, and the partials are then merged in the
+   * order the files were given, so the result is the same as calling addFile on each in turn.
+   * Each partial handles duplicate days with this FarmCollection's DuplicatePolicy. A file that
+   * cannot be parsed, or whose partial this FarmCollection refuses to merge, contributes nothing,
+   * but does not stop the others from being added.
+   * @param files the CSVs to add the data for to this FarmCollection
+   * @return every file that could not be added, mapped to the reason why; empty if all succeeded
+   */
+  public Map<File, IOException> addFiles(List<File> files) {
+    List<CompletableFuture<FarmCollection>> partials = new ArrayList<>();
+    for (File file : files) {
+      partials.add(CompletableFuture.supplyAsync(() -> {
+        FarmCollection partial = newPartial();
+        try {
+          partial.addMappedFile(file);
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return partial;
+      }));
+    }
+    
+    Map<File, IOException> errors = new LinkedHashMap<>();
+    for (int i = 0; i < files.size(); i++) {
+      try {
+        merge(partials.get(i).join());
+      }
+      catch (CompletionException e) {
+        errors.put(files.get(i), toIOException(e.getCause()));
+      }
+      catch (IllegalArgumentException e) { // refused by the DuplicatePolicy; nothing was merged
+        errors.put(files.get(i), new IOException(e.getMessage(), e));
+      }
+    }
+    return errors;
+  }
+  
+  /**
+   * Converts the cause of a failed parse into an IOException.
+   * @param cause the exception thrown while parsing
+   * @return the IOException behind cause, or a new IOException wrapping it
+   */
+  private static IOException toIOException(Throwable cause) {
+    if (cause instanceof UncheckedIOException) {
+      return ((UncheckedIOException) cause).getCause();
+    }
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    return new IOException(cause.getMessage(), cause);
+  }
+  
+  /**
+   * Writes every MilkStat in this FarmCollection to a binary snapshot, which loadSnapshot can
+   * restore far faster than the original CSVs can be parsed.
+   * @param file the file to write the snapshot to
+   * @throws IOException if the file cannot be written
+   */
+  public void saveSnapshot(File file) throws IOException {
+    FarmSnapshot.save(this, file);
+  }
+  
+  /**
+   * Adds every MilkStat in a binary snapshot written by saveSnapshot to this FarmCollection.
+   * @param file the snapshot to load
+   * @throws IOException if the file cannot be read or is not a valid snapshot, or if its weights
+   *    are refused by the DuplicatePolicy, in which case nothing is added
+   */
+  public void loadSnapshot(File file) throws IOException {
+    FarmSnapshot.load(file, this);
+  }
+  
+  /**
+   * Adds every MilkStat of another FarmCollection to this one. Farms are matched by farm ID, and
+   * MilkStats keep their order. The other FarmCollection is not changed. A merge is either applied
+   * in full or, if it would be refused, not at all.
+   * @param other the FarmCollection to copy MilkStats from
+   * @throws IllegalArgumentException if the farms are day-slotted with the REJECT policy and other
+   *    has a second weight for some day, or with the SUM policy and some day's total would
+   *    overflow, in which case nothing is merged
+   */
+  public void merge(FarmCollection other) {
+    checkMerge(other);
+    for (Farm f : other.getFarmCollection()) {
+      int index = findOrAddFarm(f.getFarmId());
+      farmCollection.get(index).merge(f);
+      syncCube(index, f);
+    }
+  }
+  
+  /**
+   * Takes over the farms, totals and columns of a partial made by newPartial, as a merge into a
+   * FarmCollection with no farms would, but without copying a single MilkStat. The partial must
+   * not be used afterwards.
+   * @param partial the partial to take over
+   * @throws IllegalStateException if this FarmCollection already holds farms
+   */
+  void takeOver(FarmCollection partial) {
+    if (!farmCollection.isEmpty()) {
+      throw new IllegalStateException("Only an empty FarmCollection can take over a partial.");
+    }
+    farmCollection = partial.farmCollection;
+    farmIndex = partial.farmIndex;
+    cube = partial.cube;
+    columns = partial.columns;
+  }
+  
+  /**
+   * Checks that merge(other) would not be refused, without changing anything. Only farms that are
+   * day-slotted with the REJECT or SUM policy ever refuse a weight.
+   * @param other the FarmCollection that would be merged
+   * @throws IllegalArgumentException if merge(other) would be refused
+   */
+  private void checkMerge(FarmCollection other) {
+    if (!canRefuse()) {
+      return;
+    }
+    for (Farm f : other.getFarmCollection()) {
+      int index = indexOfFarm(f.getFarmId());
+      Farm farm = index < 0 ? new Farm(f.getFarmId(), policy) : farmCollection.get(index);
+      farm.checkMerge(f);
+    }
+  }
+  
+  /**
+   * Returns whether adding a weight can be refused: by the REJECT policy when its day already has
+   * one, or by the SUM policy when its day's total would overflow.
+   * @return whether this FarmCollection may refuse a weight
+   */
+  private boolean canRefuse() {
+    return policy == DuplicatePolicy.REJECT || policy == DuplicatePolicy.SUM;
+  }
+  
+  /**
+   * Constructs a new empty FarmCollection that stores its data the same way as this one and
+   * handles duplicate days with the same DuplicatePolicy, for a partial to be parsed into on
+   * another thread and then merged into this one.
+   * @return the new FarmCollection
+   */
+  FarmCollection newPartial() {
+    if (policy != null) {
+      return new FarmCollection(policy);
+    }
+    return new FarmCollection(columns != null);
   }
   
   /**
    * Adds the specified MilkStat, sorting it into the correct Farm and then FarmYear.
    * @param ms the MilkStat to be added
+   * @throws IllegalArgumentException if the farms are day-slotted with the REJECT policy and the
+   *    day already has a weight, or with the SUM policy and the day's total would overflow
    */
   public void addMilkStat(MilkStat ms) {
-    String milkId = ms.getFarmId();
-    Farm addToFarm = getFarm(milkId); // find the farm if it exists
+    int index = findOrAddFarm(ms.getFarmId());
+    long change = farmCollection.get(index).addMilkStat(ms); // this finds the correct FarmYear
+    cube.add(index, ms.getYear(), ms.getMonth(), change);
+  }
+  
+  /**
+   * Adds a weight given as primitives, sorting it into the correct Farm and then FarmYear.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param farmId the name of the farm the weight belongs to
+   * @param weight the weight of milk recorded
+   * @throws IllegalArgumentException if the farms are day-slotted with the REJECT policy and the
+   *    day already has a weight, or with the SUM policy and the day's total would overflow
+   */
+  public void addMilkWeight(int year, int month, int day, String farmId, int weight) {
+    int index = findOrAddFarm(farmId);
+    long change = farmCollection.get(index).addMilkWeight(year, month, day, weight);
+    cube.add(index, year, month, change);
+  }
+  
+  /**
+   * Removes the weight a Farm recorded on a day. Only possible when the farms are day-slotted.
+   * @param year the year of the day
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @param farmId the name of the farm
+   * @return whether there was a weight to remove
+   * @throws UnsupportedOperationException if the farms are not day-slotted
+   */
+  public boolean removeMilkWeight(int year, int month, int day, String farmId) {
+    int index = indexOfFarm(farmId);
+    if (index < 0) {
+      return false;
+    }
+    FarmYear fy = farmCollection.get(index).findYear(year);
+    if (fy == null || !fy.hasWeightOnDay(month, day)) {
+      return false;
+    }
+    cube.add(index, year, month, fy.removeMilkWeight(month, day));
+    return true;
+  }
+  
+  /**
+   * Hands every weight in this FarmCollection to a sink as primitives, farm by farm, without
+   * boxing or building MilkStats.
+   * @param sink the sink to receive each weight
+   */
+  public void forEachWeight(MilkSink sink) {
+    for (Farm f : farmCollection) {
+      f.forEachWeight(sink);
+    }
+  }
+  
+  /**
+   * Returns the position of the Farm represented by the specified farm ID, creating the Farm if it
+   * does not exist.
+   * @param farmId the name of the Farm to be found
+   * @return the position of the Farm in getFarmCollection()
+   */
+  int findOrAddFarm(String farmId) {
+    int index = indexOfFarm(farmId); // find the farm if it exists
     
-    if (addToFarm == null) { // if it, doesn't create it
-      addToFarm = new Farm(milkId);
-      addFarm(addToFarm);
+    if (index < 0) { // if it, doesn't create it
+      index = farmCollection.size();
+      if (columns != null) {
+        addFarm(new Farm(farmId, columns, index));
+      }
+      else if (policy != null) {
+        addFarm(new Farm(farmId, policy));
+      }
+      else {
+        addFarm(new Farm(farmId));
+      }
+    }
+    return index;
+  }
+  
+  /**
+   * Returns the position of the Farm represented by the specified farm ID.
+   * @param farmId the name of the Farm to be found
+   * @return the position of the Farm in getFarmCollection(), or -1 if there is no such Farm
+   */
+  public int indexOfFarm(String farmId) {
+    Integer index = farmIndex.get(farmId);
+    if (index == null || !farmCollection.get(index).getFarmId().equals(farmId)) {
+      return -1;
+    }
+    return index;
+  }
+  
+  /**
+   * Brings the aggregate cube up to date with the Farm at a position, for every year a source Farm
+   * has data in. Used after that Farm was changed without going through this FarmCollection, as
+   * when merging; the change is worked out from the Farm's own totals, so duplicate policies are
+   * taken into account.
+   * @param index the position of the farm whose totals should be copied
+   * @param source the farm whose years were added to the farm at index
+   */
+  private void syncCube(int index, Farm source) {
+    Farm farm = farmCollection.get(index);
+    for (FarmYear sourceYear : source.getYearList()) {
+      int year = sourceYear.getYear();
+      FarmYear fy = farm.findYear(year);
+      if (fy == null) {
+        continue;
+      }
+      for (int month = 0; month < 12; month++) {
+        addToCube(index, year, month, fy.sumOfWeightInMonth(month) - cube.get(index, year, month));
+      }
+    }
+  }
+  
+  /**
+   * Adds a weight to one cell of the aggregate cube. For use when a Farm is filled without going
+   * through this FarmCollection, such as when loading a snapshot.
+   * @param index the position of the farm
+   * @param year the year
+   * @param month the month, from 0-11
+   * @param weight the weight to add
+   */
+  void addToCube(int index, int year, int month, long weight) {
+    if (weight != 0) {
+      cube.add(index, year, month, weight);
     }
-    addToFarm.addMilkStat(ms); // note this method already finds the correct FarmYear
   }
   
   /**
@@ -64,24 +482,27 @@ public class FarmCollection {
    * @throws IllegalArgumentException if a farm with the same name already exists
    */
   public void addFarm(Farm farm) {
-    if (getFarm(farm.getFarmId()) != null) {
+    String farmId = farm.getFarmId();
+    int index = farmCollection.size();
+    if (farmIndex.putIfAbsent(farmId, index) != null) {
       throw new IllegalArgumentException("A Farm with the same name already exists.");
     }
     farmCollection.add(farm);
+    syncCube(index, farm); // the farm may already hold MilkStats
   }
   
   /**
-   * Returns the Farm that is represented by the specified farm ID.
+   * Returns the Farm that is represented by the specified farm ID. Farms are indexed by the ID
+   * they had when added, so a Farm renamed afterwards is no longer found by either name.
    * @param farmId the name of the Farm to be found
    * @return the Farm represented by the specified ID
    */
   public Farm getFarm(String farmId) {
-    for (Farm f : farmCollection) {
-      if (f.getFarmId().equals(farmId)) {
-        return f;
-      }
+    int index = indexOfFarm(farmId);
+    if (index < 0) {
+      return null;
     }
-    return null;
+    return farmCollection.get(index);
   }
   
   /**
@@ -92,18 +513,211 @@ public class FarmCollection {
     return farmCollection;
   }
   
+  /**
+   * Returns the sum of all weights of milk a Farm recorded between two dates, including both.
+   * @param farmId the name of the Farm
+   * @param from the first date to include
+   * @param to the last date to include
+   * @return the sum of the weights in the range, or 0 if there is no such Farm
+   */
+  public long sumOfWeightBetween(String farmId, LocalDate from, LocalDate to) {
+    Farm farm = getFarm(farmId);
+    if (farm == null) {
+      return 0;
+    }
+    return farm.sumOfWeightBetween(from, to);
+  }
+  
+  /**
+   * Returns the sum of all weights of milk every Farm recorded between two dates, including both,
+   * such as over a billing period or a quarter spanning two years.
+   * @param from the first date to include
+   * @param to the last date to include
+   * @return the sum of the weights in the range for each Farm, in the order of getFarmCollection()
+   */
+  public long[] sumsOfWeightBetween(LocalDate from, LocalDate to) {
+    long[] sums = new long[farmCollection.size()];
+    for (int i = 0; i < sums.length; i++) {
+      sums[i] = farmCollection.get(i).sumOfWeightBetween(from, to);
+    }
+    return sums;
+  }
+  
+  /**
+   * Returns a summary of the weights of every Farm in a month, merged from the sketches each
+   * FarmYear keeps rather than from the rows themselves.
+   * @param year the year of the month
+   * @param month the month to summarize, from 0-11
+   * @return a sketch of the month across every Farm
+   */
+  public WeightSketch sketchOfMonth(int year, int month) {
+    WeightSketch sketch = new WeightSketch();
+    for (Farm f : farmCollection) {
+      FarmYear fy = f.findYear(year);
+      if (fy != null && fy.countInMonth(month) > 0) {
+        sketch.merge(fy.monthSketch(month));
+      }
+    }
+    return sketch;
+  }
+  
+  /**
+   * Returns a summary of the weights of every Farm in a year.
+   * @param year the year to summarize
+   * @return a sketch of the year across every Farm
+   */
+  public WeightSketch sketchOfYear(int year) {
+    WeightSketch sketch = new WeightSketch();
+    for (Farm f : farmCollection) {
+      FarmYear fy = f.findYear(year);
+      if (fy != null) {
+        for (int month = 0; month < 12; month++) {
+          if (fy.countInMonth(month) > 0) {
+            sketch.merge(fy.monthSketch(month));
+          }
+        }
+      }
+    }
+    return sketch;
+  }
+  
+  /**
+   * Ranks the Farms that produced the most milk in a year.
+   * @param k the largest number of Farms to rank
+   * @param year the year to rank
+   * @return the top k Farms and their share of the year's total weight
+   */
+  public FarmRanking topFarms(int k, int year) {
+    long[] months = new long[12];
+    return FarmRanking.rank(this, k, index -> {
+      cube.copyMonths(index, year, months);
+      long weightSum = 0;
+      for (long monthSum : months) {
+        weightSum += monthSum;
+      }
+      return weightSum;
+    });
+  }
+  
+  /**
+   * Ranks the Farms that produced the most milk in a month.
+   * @param k the largest number of Farms to rank
+   * @param year the year of the month to rank
+   * @param month the month to rank, from 0-11
+   * @return the top k Farms and their share of the month's total weight
+   */
+  public FarmRanking topFarms(int k, int year, int month) {
+    return FarmRanking.rank(this, k, index -> cube.get(index, year, month));
+  }
+  
+  /**
+   * Ranks the Farms that produced the most milk between two dates, including both.
+   * @param k the largest number of Farms to rank
+   * @param from the first date to include
+   * @param to the last date to include
+   * @return the top k Farms and their share of the range's total weight
+   */
+  public FarmRanking topFarms(int k, LocalDate from, LocalDate to) {
+    return FarmRanking.rank(this, k,
+        index -> farmCollection.get(index).sumOfWeightBetween(from, to));
+  }
+  
+  /**
+   * Publishes an immutable view of the monthly totals of every Farm as they stand, for other
+   * threads to read through getView(). Meant to be called once per batch of changes, such as
+   * after each file or batch is merged. Years that have not changed since the last view are
+   * shared with it rather than copied.
+   * @return the new view
+   */
+  public FarmCollectionView publish() {
+    FarmCollectionView previous = view;
+    int farmCount = farmCollection.size();
+    String[] farmIds = previous.farmIds();
+    if (farmIds.length < farmCount) {
+      farmIds = Arrays.copyOf(farmIds, Math.max(farmCount, farmIds.length * 2));
+    }
+    for (int i = previous.getFarmCount(); i < farmCount; i++) {
+      farmIds[i] = farmCollection.get(i).getFarmId();
+    }
+    
+    int[] years = cube.getYears();
+    int yearCount = years.length;
+    long[][] yearTotals = new long[yearCount][];
+    int[][] farmYearVersions = new int[yearCount][];
+    int[] yearVersions = new int[yearCount];
+    for (int offset = 0; offset < yearCount; offset++) {
+      int year = years[offset];
+      yearVersions[offset] = cube.getYearVersion(year);
+      long[] totals = previous.yearTotals(year);
+      if (totals != null && previous.getYearVersion(year) == yearVersions[offset]) {
+        yearTotals[offset] = totals; // unchanged, so new farms have nothing in this year either
+        farmYearVersions[offset] = previous.farmYearVersions(year);
+      }
+      else {
+        yearTotals[offset] = cube.copyYear(year, farmCount);
+        farmYearVersions[offset] = cube.copyYearVersions(year, farmCount);
+      }
+    }
+    
+    view = new FarmCollectionView(farmIndex, farmIds, farmCount, years, yearTotals,
+        farmYearVersions, yearVersions, sumOfAllFarmWeights(), countRows(),
+        previous.getSequence() + 1);
+    return view;
+  }
+  
+  /**
+   * Returns the most recently published view of this FarmCollection. Safe to call from any
+   * thread, and never blocks.
+   * @return the current view
+   */
+  public FarmCollectionView getView() {
+    return view;
+  }
+  
+  /**
+   * Returns the monthly totals of every Farm, indexed by the Farm's position in
+   * getFarmCollection(). Only MilkStats added through this FarmCollection are counted; MilkStats
+   * added directly to one of its Farms or FarmYears are not.
+   * @return the aggregate cube of this FarmCollection
+   */
+  public AggregateCube getAggregateCube() {
+    return cube;
+  }
+  
+  /**
+   * Returns the columns this FarmCollection stores its data in.
+   * @return the columns of this FarmCollection, or null if it is not columnar
+   */
+  public MilkColumns getColumns() {
+    return columns;
+  }
+  
   /**
    * Returns the weight of every MilkStat at every Farm represented by this FarmCollection.
    * @return the weight of every MilkStat
    */
-  public int sumOfAllFarmWeights() {
-    int weightSum = 0;
+  public long sumOfAllFarmWeights() {
+    long weightSum = 0;
     for (Farm f : farmCollection) {
       weightSum += f.sumOfAllWeights();
     }
     return weightSum;
   }
   
+  /**
+   * Returns the number of MilkStats held by every Farm represented by this FarmCollection.
+   * @return the number of MilkStats
+   */
+  public long countRows() {
+    long rowCount = 0;
+    for (Farm f : farmCollection) {
+      for (FarmYear fy : f.getYearList()) {
+        rowCount += fy.countInYear();
+      }
+    }
+    return rowCount;
+  }
+  
   /**
    * Returns a String representation of this FarmCollection.
    * @return a String representation of this FarmCollection
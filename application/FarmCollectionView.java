@@ -0,0 +1,205 @@
+package application;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable, point-in-time view of the monthly totals of a FarmCollection, as published by
+ * FarmCollection.publish(). Any thread may read a view while the FarmCollection goes on being
+ * changed, without locking and without ever seeing a half-applied change.
+ * 
+ * <p>Views share structure with one another: a new view copies only the years that changed since
+ * the previous one, and the farm IDs and farm index are shared, append-only structures that each
+ * view reads only up to its own farm count.
+ */
+public final class FarmCollectionView {
+  private static final int MONTHS = 12;
+  private final Map<String, Integer> farmIndex; // shared; positions past farmCount are ignored
+  private final String[] farmIds; // shared; only the first farmCount are part of this view
+  private final int farmCount; // the number of farms in this view
+  private final int[] years; // the years with data, in ascending order
+  private final long[][] yearTotals; // the totals of each year, at farmIndex * 12 + month
+  private final int[][] farmYearVersions; // the version of each farm-year, by year then farm
+  private final int[] yearVersions; // the version of each year
+  private final long weightSum; // the sum of every weight in this view
+  private final long rowCount; // the number of weights in this view
+  private final long sequence; // the number of views published before this one
+  
+  /**
+   * Constructs a new FarmCollectionView. Nothing passed in may be changed afterwards, except for
+   * entries of farmIndex and farmIds past farmCount.
+   * @param farmIndex the position of every farm, keyed on its farm ID
+   * @param farmIds the farm ID at every position
+   * @param farmCount the number of farms in this view
+   * @param years the years with data, in ascending order
+   * @param yearTotals the totals of each of years, at farmIndex * 12 + month
+   * @param farmYearVersions the version of each farm-year, by year then farm
+   * @param yearVersions the version of each of years
+   * @param weightSum the sum of every weight in this view
+   * @param rowCount the number of weights in this view
+   * @param sequence the number of views published before this one
+   */
+  FarmCollectionView(Map<String, Integer> farmIndex, String[] farmIds, int farmCount,
+      int[] years, long[][] yearTotals, int[][] farmYearVersions, int[] yearVersions,
+      long weightSum, long rowCount, long sequence) {
+    this.farmIndex = farmIndex;
+    this.farmIds = farmIds;
+    this.farmCount = farmCount;
+    this.years = years;
+    this.yearTotals = yearTotals;
+    this.farmYearVersions = farmYearVersions;
+    this.yearVersions = yearVersions;
+    this.weightSum = weightSum;
+    this.rowCount = rowCount;
+    this.sequence = sequence;
+  }
+  
+  /**
+   * Returns the number of farms in this view.
+   * @return the number of farms
+   */
+  public int getFarmCount() {
+    return farmCount;
+  }
+  
+  /**
+   * Returns the name of the farm at a position.
+   * @param index the position of the farm
+   * @return the name of the farm
+   */
+  public String getFarmId(int index) {
+    if (index < 0 || index >= farmCount) {
+      throw new IndexOutOfBoundsException("Farm " + index + " out of bounds for " + farmCount);
+    }
+    return farmIds[index];
+  }
+  
+  /**
+   * Returns the position of the farm with the given name.
+   * @param farmId the name of the farm
+   * @return the position of the farm, or -1 if it is not in this view
+   */
+  public int indexOfFarm(String farmId) {
+    Integer index = farmIndex.get(farmId);
+    if (index == null || index >= farmCount) {
+      return -1;
+    }
+    return index;
+  }
+  
+  /**
+   * Returns the total weight of a farm in a month.
+   * @param index the position of the farm
+   * @param year the year
+   * @param month the month, from 0-11
+   * @return the total weight, or 0 if there is none
+   */
+  public long getWeight(int index, int year, int month) {
+    long[] totals = yearTotals(year);
+    if (totals == null || (index + 1) * MONTHS > totals.length) {
+      return 0;
+    }
+    return totals[index * MONTHS + month];
+  }
+  
+  /**
+   * Copies the twelve monthly totals of a farm in a year.
+   * @param index the position of the farm
+   * @param year the year
+   * @param dest the array to copy the totals into, from January to December
+   */
+  public void copyMonths(int index, int year, long[] dest) {
+    long[] totals = yearTotals(year);
+    if (totals == null || (index + 1) * MONTHS > totals.length) {
+      Arrays.fill(dest, 0, MONTHS, 0);
+      return;
+    }
+    System.arraycopy(totals, index * MONTHS, dest, 0, MONTHS);
+  }
+  
+  /**
+   * Returns the version of a farm-year when this view was published.
+   * @param index the position of the farm
+   * @param year the year
+   * @return the version of the farm-year, or 0 if it has no data
+   */
+  public int getVersion(int index, int year) {
+    int[] versions = farmYearVersions(year);
+    if (versions == null || index >= versions.length) {
+      return 0;
+    }
+    return versions[index];
+  }
+  
+  /**
+   * Returns the version of a year when this view was published.
+   * @param year the year
+   * @return the version of the year, or 0 if it has no data
+   */
+  public int getYearVersion(int year) {
+    int offset = Arrays.binarySearch(years, year);
+    if (offset < 0) {
+      return 0;
+    }
+    return yearVersions[offset];
+  }
+  
+  /**
+   * Returns the sum of every weight in this view.
+   * @return the sum of all weights of milk
+   */
+  public long sumOfAllFarmWeights() {
+    return weightSum;
+  }
+  
+  /**
+   * Returns the number of weights held by every farm in this view.
+   * @return the number of weights
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+  
+  /**
+   * Returns the number of views the FarmCollection published before this one.
+   * @return the sequence number of this view
+   */
+  public long getSequence() {
+    return sequence;
+  }
+  
+  /**
+   * Returns the totals of a year, to be shared with the next view if the year does not change.
+   * @param year the year
+   * @return the totals, or null if this view has no data for the year
+   */
+  long[] yearTotals(int year) {
+    int offset = Arrays.binarySearch(years, year);
+    if (offset < 0) {
+      return null;
+    }
+    return yearTotals[offset];
+  }
+  
+  /**
+   * Returns the farm versions of a year, to be shared with the next view if the year does not
+   * change.
+   * @param year the year
+   * @return the versions, or null if this view has no data for the year
+   */
+  int[] farmYearVersions(int year) {
+    int offset = Arrays.binarySearch(years, year);
+    if (offset < 0) {
+      return null;
+    }
+    return farmYearVersions[offset];
+  }
+  
+  /**
+   * Returns the shared array of farm IDs, to be extended by the next view.
+   * @return the farm IDs; only the first getFarmCount() belong to this view
+   */
+  String[] farmIds() {
+    return farmIds;
+  }
+}
@@ -0,0 +1,142 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps the raw bytes of a farm ID to a single shared String, so that parsing a farm ID that has
+ * been seen before needs no String to be built. Lookups hash the bytes in place and compare them
+ * against the stored copies. A FarmDictionary is not safe to share between threads.
+ */
+public class FarmDictionary {
+  private static final int DEFAULT_CAPACITY = 64; // number of slots; always a power of two
+  private int[] slots; // entry index + 1 for each slot in use, 0 for empty slots
+  private byte[][] keys; // the bytes of each farm ID, by entry index
+  private int[] hashes; // the hash of each farm ID, by entry index
+  private String[] farmIds; // the farm ID each entry decodes to
+  private int size; // the number of entries
+  
+  /**
+   * Constructs a new empty FarmDictionary.
+   */
+  public FarmDictionary() {
+    slots = new int[DEFAULT_CAPACITY];
+    keys = new byte[DEFAULT_CAPACITY / 2][];
+    hashes = new int[DEFAULT_CAPACITY / 2];
+    farmIds = new String[DEFAULT_CAPACITY / 2];
+  }
+  
+  /**
+   * Returns the farm ID represented by a run of UTF-8 bytes, adding it to this dictionary if it
+   * has not been seen before.
+   * @param buf the buffer holding the bytes
+   * @param start the position of the first byte of the farm ID
+   * @param length the number of bytes in the farm ID
+   * @return the farm ID the bytes represent
+   */
+  public String lookup(ByteBuffer buf, int start, int length) {
+    int hash = hash(buf, start, length);
+    int mask = slots.length - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot] - 1;
+      if (entry < 0) {
+        return insert(slot, hash, buf, start, length);
+      }
+      if (hashes[entry] == hash && matches(keys[entry], buf, start, length)) {
+        return farmIds[entry];
+      }
+    }
+  }
+  
+  /**
+   * Returns the number of farm IDs in this dictionary.
+   * @return the number of farm IDs
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Copies a new farm ID into the dictionary.
+   * @param slot the empty slot the farm ID hashed to
+   * @param hash the hash of the farm ID
+   * @param buf the buffer holding the bytes
+   * @param start the position of the first byte of the farm ID
+   * @param length the number of bytes in the farm ID
+   * @return the decoded farm ID
+   */
+  private String insert(int slot, int hash, ByteBuffer buf, int start, int length) {
+    byte[] key = new byte[length];
+    for (int i = 0; i < length; i++) {
+      key[i] = buf.get(start + i);
+    }
+    String farmId = new String(key, StandardCharsets.UTF_8);
+    
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      hashes = Arrays.copyOf(hashes, size * 2);
+      farmIds = Arrays.copyOf(farmIds, size * 2);
+    }
+    keys[size] = key;
+    hashes[size] = hash;
+    farmIds[size] = farmId;
+    slots[slot] = ++size;
+    
+    if (size * 2 > slots.length) { // keep the table at most half full
+      rehash(slots.length * 2);
+    }
+    return farmId;
+  }
+  
+  /**
+   * Rebuilds the slot table with a new number of slots.
+   * @param capacity the new number of slots, a power of two
+   */
+  private void rehash(int capacity) {
+    slots = new int[capacity];
+    int mask = capacity - 1;
+    for (int entry = 0; entry < size; entry++) {
+      int slot = hashes[entry] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = entry + 1;
+    }
+  }
+  
+  /**
+   * Hashes a run of bytes.
+   * @param buf the buffer holding the bytes
+   * @param start the position of the first byte
+   * @param length the number of bytes
+   * @return the hash of the bytes
+   */
+  private static int hash(ByteBuffer buf, int start, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buf.get(start + i);
+    }
+    return hash ^ (hash >>> 16); // spread high bits into the masked low bits
+  }
+  
+  /**
+   * Checks whether a stored key equals a run of bytes.
+   * @param key the stored key
+   * @param buf the buffer holding the bytes
+   * @param start the position of the first byte
+   * @param length the number of bytes
+   * @return true if the bytes equal the key; false otherwise
+   */
+  private static boolean matches(byte[] key, ByteBuffer buf, int start, int length) {
+    if (key.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (key[i] != buf.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,269 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads CSVs into a FarmCollection in the background, so the GUI stays responsive. Files are
+ * parsed concurrently, one per parser thread, each in batches of roughly BATCH_BYTES bytes.
+ * Every finished batch is merged into the FarmCollection through a publishing Executor, such as
+ * the JavaFX application thread, in the order the files were given, so the result is the same
+ * as loading the files one after another. Reports can therefore be generated from the data loaded
+ * so far while the rest is still being read.
+ */
+public class FarmIngestor {
+  private static final int BATCH_BYTES = 4 << 20; // bytes parsed before each publication
+  private static final int QUEUED_BATCHES = 2; // batches a file may parse ahead of publication
+  private FarmCollection target; // the FarmCollection batches are published to
+  private Executor publisher; // the Executor that merges batches and reports progress
+  private IngestListener listener; // receives progress reports
+  private ExecutorService worker; // the background thread that hands batches over in order
+  private ExecutorService parsers; // the threads files are parsed on, one file each
+  private boolean lenient; // whether malformed lines are skipped rather than failing the file
+  
+  /**
+   * Constructs a new FarmIngestor.
+   * @param target the FarmCollection batches are published to
+   * @param publisher the Executor batches are merged on; the only thread that may touch target
+   *    while files are loading
+   * @param listener receives progress reports, also through publisher
+   */
+  public FarmIngestor(FarmCollection target, Executor publisher, IngestListener listener) {
+    this(target, publisher, listener, false);
+  }
+  
+  /**
+   * Constructs a new FarmIngestor that may load files leniently. A lenient FarmIngestor skips the
+   * lines of a file that cannot be parsed, writes them to the file's error sidecar and reports
+   * them to the listener, rather than failing the rest of the file.
+   * @param target the FarmCollection batches are published to
+   * @param publisher the Executor batches are merged on; the only thread that may touch target
+   *    while files are loading
+   * @param listener receives progress reports, also through publisher
+   * @param lenient whether malformed lines are skipped rather than failing the file
+   * @see ParseErrors#sidecarFor(File)
+   */
+  public FarmIngestor(FarmCollection target, Executor publisher, IngestListener listener,
+      boolean lenient) {
+    this.lenient = lenient;
+    this.target = target;
+    this.publisher = publisher;
+    this.listener = listener;
+    this.worker = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "milk-ingest");
+      thread.setDaemon(true); // never keep the application open
+      return thread;
+    });
+    this.parsers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "milk-parse");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+  
+  /**
+   * Queues files to be loaded in the background. Calls made while an earlier batch of files is
+   * still loading wait for it to finish.
+   * @param files the CSVs to load
+   * @return a Future that completes once every file has been loaded or has failed
+   */
+  public Future<?> ingest(List<File> files) {
+    List<File> toLoad = new ArrayList<>(files);
+    return worker.submit(() -> load(toLoad));
+  }
+  
+  /**
+   * Stops the background threads once any queued files have been loaded.
+   */
+  public void shutdown() {
+    worker.shutdown();
+    parsers.shutdown();
+  }
+  
+  /**
+   * Starts parsing every file on the parser threads, then publishes their batches file by file,
+   * in order. Each batch is merged before the next is taken, and a file parses at most
+   * QUEUED_BATCHES batches ahead of its publication, so neither the publisher's queue nor files
+   * waiting their turn hold more than a few batches in memory. Files are started in order, so
+   * the file being published is never stuck behind a later one.
+   * @param files the CSVs to load
+   */
+  private void load(List<File> files) {
+    long totalBytes = 0;
+    List<BlockingQueue<Batch>> queues = new ArrayList<>();
+    List<AtomicBoolean> abandoned = new ArrayList<>(); // set once a batch of the file is refused
+    for (File file : files) {
+      totalBytes += file.length();
+      BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+      AtomicBoolean fileAbandoned = new AtomicBoolean();
+      parsers.execute(() -> parse(file, queue, fileAbandoned));
+      queues.add(queue);
+      abandoned.add(fileAbandoned);
+    }
+    
+    AtomicLong merged = new AtomicLong(); // the rows merged into target so far
+    Semaphore published = new Semaphore(0); // released once each batch has been merged
+    long bytes = 0;
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        File file = files.get(i);
+        Batch batch;
+        while ((batch = queues.get(i).take()).rows != null) {
+          bytes += batch.bytes;
+          publish(batch.rows, batch.rowCount, merged, file, abandoned.get(i), bytes, totalBytes,
+              published);
+          published.acquire(); // wait for the merge, so batches never pile up on the publisher
+        }
+        if (batch.failure != null) {
+          IOException e = batch.failure;
+          publisher.execute(() -> listener.failed(file, e));
+        }
+        if (batch.errors != null && batch.errors.getRejectedCount() > 0) {
+          reportRejected(file, batch.errors);
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // shutting down; the rest is never published
+      return;
+    }
+    publisher.execute(() -> listener.finished(merged.get()));
+  }
+  
+  /**
+   * Parses one file on a parser thread, queueing each batch for publication and then a last
+   * Batch with no rows, which carries any failure or rejected lines. Parsing stops early once a
+   * batch of the file has been refused.
+   * @param file the CSV to parse
+   * @param queue the queue to hand the file's batches to, in order
+   * @param abandoned set once a batch of the file has been refused
+   */
+  private void parse(File file, BlockingQueue<Batch> queue, AtomicBoolean abandoned) {
+    long start = System.nanoTime();
+    // one ParseErrors per file, so line numbers run on from chunk to chunk
+    ParseErrors errors = lenient ? new ParseErrors(file) : null;
+    IOException failure = null;
+    try {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        long[] bounds = FarmParser.splitAtLines(channel,
+            (int) Math.max(1, channel.size() / BATCH_BYTES));
+        FarmDictionary dictionary = new FarmDictionary();
+        for (int chunk = 0; chunk + 1 < bounds.length && !abandoned.get(); chunk++) {
+          FarmCollection batch = target.newPartial();
+          long rows = FarmParser.parseMapped(channel, bounds[chunk], bounds[chunk + 1],
+              chunk == 0, dictionary, batch::addMilkWeight, errors);
+          queue.put(new Batch(batch, rows, bounds[chunk + 1] - bounds[chunk], null, null));
+        }
+        MilkMetrics.FILE_INGEST.recordSince(start); // parsed, though perhaps not yet merged
+      }
+      catch (IOException e) {
+        failure = e;
+      }
+      catch (IllegalArgumentException e) { // a weight refused by the DuplicatePolicy
+        failure = new IOException(e.getMessage(), e);
+      }
+      queue.put(new Batch(null, 0, 0, failure, errors));
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // shutting down; nothing is waiting for the file
+    }
+  }
+  
+  /**
+   * Writes the rejected lines of a file to its error sidecar and reports them to the listener.
+   * The lines are still reported if the sidecar cannot be written.
+   * @param file the file with rejected lines
+   * @param errors the rejected lines
+   */
+  private void reportRejected(File file, ParseErrors errors) {
+    File sidecar = ParseErrors.sidecarFor(file);
+    try {
+      errors.writeSidecar(sidecar);
+    }
+    catch (IOException e) {
+      sidecar = null;
+    }
+    File written = sidecar;
+    publisher.execute(() -> listener.rejected(file, errors, written));
+  }
+  
+  /**
+   * Hands a parsed batch to the publisher to be merged into the target FarmCollection, which then
+   * publishes a new view for readers. A batch the target refuses is not merged at all; the file
+   * is reported as failed and its later batches are dropped.
+   * @param batch the parsed rows
+   * @param rows the number of rows in batch
+   * @param merged the number of rows merged so far, across every file
+   * @param file the file the rows came from
+   * @param abandoned set once a batch of the file has been refused
+   * @param bytes the number of bytes read so far
+   * @param totalBytes the total number of bytes to be read
+   * @param published released once the batch has been merged, refused or dropped
+   */
+  private void publish(FarmCollection batch, long rows, AtomicLong merged, File file,
+      AtomicBoolean abandoned, long bytes, long totalBytes, Semaphore published) {
+    publisher.execute(() -> {
+      try {
+        if (abandoned.get()) {
+          return;
+        }
+        try {
+          target.merge(batch);
+        }
+        catch (IllegalArgumentException e) { // nothing was merged
+          abandoned.set(true);
+          listener.failed(file, new IOException("Could not merge " + file.getName() + ": "
+              + e.getMessage(), e));
+          return;
+        }
+        target.publish();
+        listener.progress(file, merged.addAndGet(rows), bytes, totalBytes);
+      }
+      finally {
+        published.release();
+      }
+    });
+  }
+  
+  /**
+   * A parsed batch of a file waiting to be published, or the end of the file.
+   */
+  private static final class Batch {
+    private final FarmCollection rows; // the parsed rows, or null at the end of the file
+    private final long rowCount; // the number of rows parsed
+    private final long bytes; // the number of bytes of the file the rows were parsed from
+    private final IOException failure; // why the file could not be loaded, or null
+    private final ParseErrors errors; // the file's rejected lines, or null
+    
+    /**
+     * Constructs a new Batch.
+     * @param rows the parsed rows, or null at the end of the file
+     * @param rowCount the number of rows parsed
+     * @param bytes the number of bytes of the file the rows were parsed from
+     * @param failure why the file could not be loaded, or null
+     * @param errors the file's rejected lines, or null
+     */
+    private Batch(FarmCollection rows, long rowCount, long bytes, IOException failure,
+        ParseErrors errors) {
+      this.rows = rows;
+      this.rowCount = rowCount;
+      this.bytes = bytes;
+      this.failure = failure;
+      this.errors = errors;
+    }
+  }
+}
@@ -4,9 +4,12 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
 
 /**
@@ -14,6 +17,19 @@ import java.util.List;
  * @author Sean
  */
 public class FarmParser {
+  private static final long MAP_WINDOW = 1L << 30; // the most bytes mapped into memory at once
+  private static final long MIN_CHUNK = 1L << 20; // the smallest range worth parsing on its own
+  private static final int SCAN_BUFFER = 4096; // bytes read at a time when looking for a line break
+  private static final int MAX_LINE_TEXT = 1024; // the most bytes of a rejected line decoded
+  private static final int BAD_YEAR = 0; // reasons a row is rejected, indexing REJECT_REASONS
+  private static final int BAD_MONTH = 1;
+  private static final int BAD_DAY = 2;
+  private static final int TOO_FEW_FIELDS = 3;
+  private static final int BAD_WEIGHT = 4;
+  private static final int TOO_MANY_FIELDS = 5;
+  private static final int BAD_DATE = 6;
+  private static final String[] REJECT_REASONS = {"bad year", "bad month", "bad day",
+      "too few fields", "bad weight", "too many fields", "date out of range"};
   private File file; // the file to be parsed by this FarmParser
   private BufferedReader br; // the BufferedReader this FarmParser represents
   
@@ -46,8 +62,44 @@ public class FarmParser {
     List<MilkStat> milkList = new ArrayList<>();
     String milkStr = "";
     while ((milkStr = br.readLine()) != null) {
-      milkList.add(strToMilkStat(milkStr));
+      try {
+        milkList.add(strToMilkStat(milkStr));
+      }
+      catch (RuntimeException e) { // a malformed row
+        MilkMetrics.recordParseError();
+        throw e;
+      }
     }
+    br.close(); // the whole file has been read
+    MilkMetrics.recordParse(milkList.size(), file.length());
+    return milkList;
+  }
+  
+  /**
+   * Parses the file previously read into this FarmParser leniently: lines that cannot be parsed
+   * are recorded in errors and skipped, rather than ending the parse. Each line is validated as
+   * it is scanned, without splitting it or throwing, so dirty files parse as fast as clean ones.
+   * @param errors records every line rejected
+   * @return a List of MilkStats represented by the lines that could be parsed
+   * @throws IOException if the file cannot be read
+   */
+  public List<MilkStat> parseFile(ParseErrors errors) throws IOException {
+    List<MilkStat> milkList = new ArrayList<>();
+    long lineNumber = 1; // the header has already been read
+    String milkStr = "";
+    while ((milkStr = br.readLine()) != null) {
+      lineNumber++;
+      if (milkStr.isEmpty()) {
+        continue;
+      }
+      MilkStat ms = parseLine(milkStr, lineNumber, errors);
+      if (ms != null) {
+        milkList.add(ms);
+      }
+    }
+    br.close(); // the whole file has been read
+    errors.setLineCount(lineNumber);
+    MilkMetrics.recordParse(milkList.size(), file.length());
     return milkList;
   }
   
@@ -68,26 +120,458 @@ public class FarmParser {
    */
   public static MilkStat strToMilkStat(String milkStr) {
     String[] milkStatArr = milkStr.split(",");
-    Calendar dateStr = dateStrToDate(milkStatArr[0]);
+    String[] dateStrArr = milkStatArr[0].split("-");
+    int year = Integer.parseInt(dateStrArr[0]);
+    int month = Integer.parseInt(dateStrArr[1]) - 1; // Java months begin at 0 and not 1
+    int day = Integer.parseInt(dateStrArr[2]);
     String farmId = milkStatArr[1];
-    int weight = Integer.valueOf(milkStatArr[2]);
+    int weight = Integer.parseInt(milkStatArr[2]);
     
-    MilkStat milkStat = new MilkStat(dateStr, farmId, weight);
+    MilkStat milkStat = new MilkStat(year, month, day, farmId, weight);
     return milkStat;
   }
   
   /**
-   * Converts a String representing a day in time into a Calendar object.
-   * @param dateStr String of the format "YYYY-MM-DD"
-   * @return a Calendar with the properties of dateStr
+   * Converts a line of text into a MilkStat without throwing. Unlike strToMilkStat, a line that
+   * cannot be parsed is recorded in errors and null is returned.
+   * @param milkStr String of the format "YYYY-MM-DD,farmid,weight"
+   * @param lineNumber the number of the line, for errors
+   * @param errors records the line if it is rejected
+   * @return a MilkStat with the properties of milkStr, or null if it cannot be parsed
+   */
+  public static MilkStat parseLine(String milkStr, long lineNumber, ParseErrors errors) {
+    long parsed = parseNumber(milkStr, 0, '-');
+    if (parsed < 0) {
+      return reject(milkStr, lineNumber, BAD_YEAR, errors);
+    }
+    int year = (int) parsed;
+    
+    parsed = parseNumber(milkStr, (int) (parsed >>> 32) + 1, '-');
+    if (parsed < 0) {
+      return reject(milkStr, lineNumber, BAD_MONTH, errors);
+    }
+    int month = (int) parsed - 1; // Java months begin at 0 and not 1
+    
+    parsed = parseNumber(milkStr, (int) (parsed >>> 32) + 1, ',');
+    if (parsed < 0) {
+      return reject(milkStr, lineNumber, BAD_DAY, errors);
+    }
+    int day = (int) parsed;
+    if (!MilkStat.isValidDate(year, month, day)) {
+      return reject(milkStr, lineNumber, BAD_DATE, errors);
+    }
+    
+    int idStart = (int) (parsed >>> 32) + 1;
+    int idEnd = milkStr.indexOf(',', idStart);
+    if (idEnd < 0) {
+      return reject(milkStr, lineNumber, TOO_FEW_FIELDS, errors);
+    }
+    
+    int i = idEnd + 1;
+    boolean negative = i < milkStr.length() && milkStr.charAt(i) == '-';
+    if (negative) {
+      i++;
+    }
+    parsed = parseNumber(milkStr, i, '\n');
+    if (parsed < 0) {
+      while (i < milkStr.length() && milkStr.charAt(i) >= '0' && milkStr.charAt(i) <= '9') {
+        i++;
+      }
+      boolean extraField = i < milkStr.length() && milkStr.charAt(i) == ',';
+      return reject(milkStr, lineNumber, extraField ? TOO_MANY_FIELDS : BAD_WEIGHT, errors);
+    }
+    int weight = negative ? -(int) parsed : (int) parsed;
+    return new MilkStat(year, month, day, milkStr.substring(idStart, idEnd), weight);
+  }
+  
+  /**
+   * Records a line that cannot be parsed.
+   * @param milkStr the line
+   * @param lineNumber the number of the line
+   * @param reason the index in REJECT_REASONS of why the line cannot be parsed
+   * @param errors records the line
+   * @return null, in place of a MilkStat
+   */
+  private static MilkStat reject(String milkStr, long lineNumber, int reason, ParseErrors errors) {
+    errors.reject(lineNumber, REJECT_REASONS[reason], milkStr);
+    MilkMetrics.recordParseError();
+    return null;
+  }
+  
+  /**
+   * Decodes a run of digits in a String ending in a given delimiter, in the same way as the
+   * MappedByteBuffer version. A delimiter of '\n' means the end of the String.
+   * @param text the String holding the digits
+   * @param i the position of the first digit
+   * @param delimiter the character expected after the digits
+   * @return the position of the delimiter in the high 32 bits and the value in the low 32 bits,
+   *    or -1 if there are no digits, the value does not fit in an int, or the wrong delimiter
+   */
+  private static long parseNumber(String text, int i, char delimiter) {
+    long value = 0;
+    int start = i;
+    int length = text.length();
+    while (i < length) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        break;
+      }
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE) { // as Integer.parseInt would refuse it
+        return -1;
+      }
+      i++;
+    }
+    if (i == start) {
+      return -1;
+    }
+    if (delimiter == '\n' ? i != length : i == length || text.charAt(i) != delimiter) {
+      return -1;
+    }
+    return ((long) i << 32) | value;
+  }
+  
+  /**
+   * Parses a CSV of the format "YYYY-MM-DD,farmid,weight" by mapping it into memory and decoding
+   * its bytes directly, handing every row to a MilkSink as primitives. Unlike parseFile, no
+   * Strings, arrays or MilkStats are built per row; farm IDs are resolved through dictionary, so
+   * only the first occurrence of each farm ID allocates. The first line is skipped, as in
+   * readFile, and blank lines are ignored.
+   * @param file the file to be parsed
+   * @param dictionary the dictionary to resolve farm IDs with
+   * @param sink the sink every row is handed to
+   * @return the number of rows parsed
+   * @throws IOException if the file cannot be read or contains a malformed row
    */
-  private static Calendar dateStrToDate(String dateStr) {
-    String[] dateStrArr = dateStr.split("-");
-    int year = Integer.valueOf(dateStrArr[0]);
-    int month = Integer.valueOf(dateStrArr[1]) - 1; // Java months begin at 0 and not 1
-    int day = Integer.valueOf(dateStrArr[2]);
+  public static long parseMapped(File file, FarmDictionary dictionary, MilkSink sink)
+      throws IOException {
+    return parseMapped(file, dictionary, sink, null);
+  }
+  
+  /**
+   * Parses a CSV in the same way as parseMapped(File, FarmDictionary, MilkSink), but leniently
+   * if errors is given: a row that is malformed, or that the sink refuses with an
+   * IllegalArgumentException, is recorded in errors and skipped rather than ending the parse.
+   * @param file the file to be parsed
+   * @param dictionary the dictionary to resolve farm IDs with
+   * @param sink the sink every row is handed to
+   * @param errors records every row rejected, or null to stop at the first malformed row
+   * @return the number of rows parsed, not counting those rejected
+   * @throws IOException if the file cannot be read, or errors is null and a row is malformed
+   */
+  public static long parseMapped(File file, FarmDictionary dictionary, MilkSink sink,
+      ParseErrors errors) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return parseMapped(channel, 0, channel.size(), true, dictionary, sink, errors);
+    }
+  }
+  
+  /**
+   * Splits a CSV into roughly equal ranges of bytes, each starting at the beginning of a line. No
+   * range is made smaller than MIN_CHUNK bytes, so small files give fewer ranges than asked for.
+   * @param channel the channel to read the CSV from
+   * @param chunks the number of ranges wanted
+   * @return the offsets bounding each range, starting with 0 and ending with the size of the file
+   * @throws IOException if the file cannot be read
+   */
+  public static long[] splitAtLines(FileChannel channel, int chunks) throws IOException {
+    long size = channel.size();
+    long chunkSize = Math.max(MIN_CHUNK, size / Math.max(chunks, 1) + 1);
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    
+    ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER);
+    long pos = chunkSize;
+    while (pos < size) {
+      long lineEnd = -1;
+      while (lineEnd < 0 && pos < size) { // look for the end of the line pos is in
+        buf.clear();
+        int read = channel.read(buf, pos);
+        for (int i = 0; i < read && lineEnd < 0; i++) {
+          if (buf.get(i) == '\n') {
+            lineEnd = pos + i;
+          }
+        }
+        pos += Math.max(read, 0);
+      }
+      if (lineEnd < 0 || lineEnd + 1 >= size) {
+        break;
+      }
+      bounds.add(lineEnd + 1);
+      pos = lineEnd + 1 + chunkSize;
+    }
+    bounds.add(size);
     
-    Calendar date = new GregorianCalendar(year, month, day);
-    return date;
+    long[] boundArr = new long[bounds.size()];
+    for (int i = 0; i < boundArr.length; i++) {
+      boundArr[i] = bounds.get(i);
+    }
+    return boundArr;
+  }
+  
+  /**
+   * Parses the rows held in a range of bytes of a CSV. The range is mapped in windows of at most
+   * MAP_WINDOW bytes, each cut back to its last line break so no row spans two windows.
+   * @param channel the channel to read the CSV from
+   * @param start the offset of the first byte of the range, at the start of a line
+   * @param end the offset just past the last byte of the range, at the end of a line
+   * @param skipHeader true if the first line of the range should be skipped
+   * @param dictionary the dictionary to resolve farm IDs with
+   * @param sink the sink every row is handed to
+   * @return the number of rows parsed
+   * @throws IOException if the range cannot be read or contains a malformed row
+   */
+  static long parseMapped(FileChannel channel, long start, long end, boolean skipHeader,
+      FarmDictionary dictionary, MilkSink sink) throws IOException {
+    return parseMapped(channel, start, end, skipHeader, dictionary, sink, null);
+  }
+  
+  /**
+   * Parses the rows held in a range of bytes of a CSV, leniently if errors is given. Ranges of a
+   * file handed the same errors in order have their lines numbered as one file.
+   * @param channel the channel to read the CSV from
+   * @param start the offset of the first byte of the range, at the start of a line
+   * @param end the offset just past the last byte of the range, at the end of a line
+   * @param skipHeader true if the first line of the range should be skipped
+   * @param dictionary the dictionary to resolve farm IDs with
+   * @param sink the sink every row is handed to
+   * @param errors records every row rejected, or null to stop at the first malformed row
+   * @return the number of rows parsed, not counting those rejected
+   * @throws IOException if the range cannot be read, or errors is null and a row is malformed
+   */
+  static long parseMapped(FileChannel channel, long start, long end, boolean skipHeader,
+      FarmDictionary dictionary, MilkSink sink, ParseErrors errors) throws IOException {
+    long rows = 0;
+    long pos = start;
+    while (pos < end) {
+      long windowEnd = Math.min(end, pos + MAP_WINDOW);
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, windowEnd - pos);
+      int limit = buf.limit();
+      if (windowEnd < end) {
+        while (limit > 0 && buf.get(limit - 1) != '\n') {
+          limit--;
+        }
+        if (limit == 0) {
+          throw new IOException("Row at byte " + pos + " is too long to be parsed.");
+        }
+      }
+      
+      int i = 0;
+      if (skipHeader) {
+        i = skipLine(buf, 0, limit);
+        skipHeader = false;
+        if (errors != null) {
+          errors.setLineCount(errors.getLineCount() + 1);
+        }
+      }
+      rows += parseRows(buf, i, limit, pos, dictionary, sink, errors);
+      pos += limit;
+    }
+    MilkMetrics.recordParse(rows, end - start);
+    return rows;
+  }
+  
+  /**
+   * Parses every row between two positions of a buffer. Rows that cannot be parsed end the parse
+   * with an IOException, unless errors is given, in which case they are recorded and skipped.
+   * @param buf the buffer holding the rows
+   * @param i the position of the first row
+   * @param limit the position just past the last row
+   * @param offset the offset of buf within the file, for error messages
+   * @param dictionary the dictionary to resolve farm IDs with
+   * @param sink the sink every row is handed to
+   * @param errors records every row rejected, or null to stop at the first malformed row
+   * @return the number of rows parsed
+   * @throws IOException if errors is null and a row is malformed
+   */
+  private static long parseRows(MappedByteBuffer buf, int i, int limit, long offset,
+      FarmDictionary dictionary, MilkSink sink, ParseErrors errors) throws IOException {
+    long rows = 0;
+    long lineNumber = errors == null ? 0 : errors.getLineCount(); // lines before i
+    while (i < limit) {
+      byte b = buf.get(i);
+      if (b == '\n' || b == '\r') { // blank line
+        lineNumber += b == '\n' ? 1 : 0;
+        i++;
+        continue;
+      }
+      int rowStart = i;
+      lineNumber++;
+      String reason;
+      try {
+        i = parseRow(buf, i, limit, dictionary, sink);
+        if (i >= 0) {
+          rows++;
+          continue;
+        }
+        reason = REJECT_REASONS[-1 - i];
+      }
+      catch (IllegalArgumentException e) { // refused by the sink, such as a repeated day
+        if (errors == null) {
+          throw e;
+        }
+        reason = e.getMessage();
+      }
+      
+      if (errors == null) {
+        throw malformedRow(offset + rowStart, reason);
+      }
+      i = skipLine(buf, rowStart, limit);
+      errors.reject(lineNumber, reason, lineText(buf, rowStart, i));
+      MilkMetrics.recordParseError();
+    }
+    if (errors != null) {
+      errors.setLineCount(lineNumber);
+    }
+    return rows;
+  }
+  
+  /**
+   * Parses one row and hands it to a sink. Every field is validated as it is scanned, so a
+   * malformed row costs no more than a good one and throws nothing.
+   * @param buf the buffer holding the row
+   * @param i the position of the start of the row
+   * @param limit the position just past the last readable byte
+   * @param dictionary the dictionary to resolve farm IDs with
+   * @param sink the sink the row is handed to
+   * @return the position of the next row, or -1 - the index in REJECT_REASONS of why the row is
+   *    malformed
+   */
+  private static int parseRow(MappedByteBuffer buf, int i, int limit, FarmDictionary dictionary,
+      MilkSink sink) {
+    long parsed = parseNumber(buf, i, limit, '-');
+    if (parsed < 0) {
+      return -1 - BAD_YEAR;
+    }
+    int year = (int) parsed;
+    i = (int) (parsed >>> 32) + 1;
+    
+    parsed = parseNumber(buf, i, limit, '-');
+    if (parsed < 0) {
+      return -1 - BAD_MONTH;
+    }
+    int month = (int) parsed - 1; // Java months begin at 0 and not 1
+    i = (int) (parsed >>> 32) + 1;
+    
+    parsed = parseNumber(buf, i, limit, ',');
+    if (parsed < 0) {
+      return -1 - BAD_DAY;
+    }
+    int day = (int) parsed;
+    i = (int) (parsed >>> 32) + 1;
+    if (!MilkStat.isValidDate(year, month, day)) {
+      return -1 - BAD_DATE;
+    }
+    
+    int idStart = i;
+    while (i < limit && buf.get(i) != ',' && buf.get(i) != '\n') {
+      i++;
+    }
+    if (i == limit || buf.get(i) != ',') {
+      return -1 - TOO_FEW_FIELDS;
+    }
+    String farmId = dictionary.lookup(buf, idStart, i - idStart);
+    i++;
+    
+    boolean negative = i < limit && buf.get(i) == '-';
+    if (negative) {
+      i++;
+    }
+    parsed = parseNumber(buf, i, limit, '\n');
+    if (parsed < 0) {
+      while (i < limit && buf.get(i) >= '0' && buf.get(i) <= '9') {
+        i++;
+      }
+      return i < limit && buf.get(i) == ',' ? -1 - TOO_MANY_FIELDS : -1 - BAD_WEIGHT;
+    }
+    int weight = negative ? -(int) parsed : (int) parsed;
+    
+    sink.accept(year, month, day, farmId, weight);
+    return (int) (parsed >>> 32) + 1;
+  }
+  
+  /**
+   * Decodes the text of a line, without its line break, for recording a rejected row. Only the
+   * first MAX_LINE_TEXT bytes are decoded.
+   * @param buf the buffer holding the line
+   * @param start the position of the start of the line
+   * @param end the position just past the end of the line
+   * @return the text of the line
+   */
+  private static String lineText(MappedByteBuffer buf, int start, int end) {
+    while (end > start && (buf.get(end - 1) == '\n' || buf.get(end - 1) == '\r')) {
+      end--;
+    }
+    byte[] text = new byte[Math.min(end - start, MAX_LINE_TEXT)];
+    buf.get(start, text);
+    return new String(text, StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Decodes a run of ASCII digits ending in a given delimiter. A line break also ends the last
+   * field of a row, and may be "\r\n" or missing entirely at the end of the buffer. To avoid
+   * allocating, the position of the delimiter and the value are packed into one long.
+   * @param buf the buffer holding the digits
+   * @param i the position of the first digit
+   * @param limit the position just past the last readable byte
+   * @param delimiter the byte expected after the digits
+   * @return the position of the delimiter in the high 32 bits and the value in the low 32 bits,
+   *    or -1 if there are no digits, the value does not fit in an int, or the wrong delimiter
+   */
+  private static long parseNumber(MappedByteBuffer buf, int i, int limit, char delimiter) {
+    long value = 0;
+    int start = i;
+    while (i < limit) {
+      byte b = buf.get(i);
+      if (b < '0' || b > '9') {
+        break;
+      }
+      value = value * 10 + (b - '0');
+      if (value > Integer.MAX_VALUE) { // as Integer.parseInt would refuse it
+        return -1;
+      }
+      i++;
+    }
+    if (i == start) {
+      return -1;
+    }
+    
+    if (delimiter == '\n') {
+      if (i < limit && buf.get(i) == '\r') {
+        i++;
+      }
+      if (i < limit && buf.get(i) != '\n') {
+        return -1;
+      }
+    }
+    else if (i == limit || buf.get(i) != delimiter) {
+      return -1;
+    }
+    return ((long) i << 32) | value;
+  }
+  
+  /**
+   * Returns the position just past the end of the line starting at a given position.
+   * @param buf the buffer holding the line
+   * @param i the position of the start of the line
+   * @param limit the position just past the last readable byte
+   * @return the position of the next line
+   */
+  private static int skipLine(MappedByteBuffer buf, int i, int limit) {
+    while (i < limit && buf.get(i) != '\n') {
+      i++;
+    }
+    return Math.min(i + 1, limit);
+  }
+  
+  /**
+   * Builds the exception thrown for a row that cannot be parsed.
+   * @param offset the offset of the start of the row in the file
+   * @param reason why the row cannot be parsed
+   * @return an IOException describing the row
+   */
+  private static IOException malformedRow(long offset, String reason) {
+    MilkMetrics.recordParseError();
+    return new IOException("Malformed row at byte " + offset + ": " + reason + ".");
   }
 }
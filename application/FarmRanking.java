@@ -0,0 +1,204 @@
+package application;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * The top producing farms of a FarmCollection over some period, heaviest first, along with the
+ * total weight of every farm over the same period. Built in a single pass over the farms, keeping
+ * only the best k in a bounded min-heap, so ranking n farms takes O(n log k) time rather than the
+ * O(n log n) of sorting them all.
+ */
+public class FarmRanking {
+  private String[] farmIds; // the name of each ranked farm, heaviest first
+  private int[] farmIndexes; // the position of each ranked farm
+  private long[] weights; // the weight of each ranked farm over the period
+  private long total; // the weight of every farm over the period, ranked or not
+  
+  /**
+   * Constructs a new FarmRanking.
+   * @param farmIds the name of each ranked farm, heaviest first
+   * @param farmIndexes the position of each ranked farm
+   * @param weights the weight of each ranked farm
+   * @param total the weight of every farm over the period
+   */
+  private FarmRanking(String[] farmIds, int[] farmIndexes, long[] weights, long total) {
+    this.farmIds = farmIds;
+    this.farmIndexes = farmIndexes;
+    this.weights = weights;
+    this.total = total;
+  }
+  
+  /**
+   * Ranks the farms of a FarmCollection. Farms with equal weights are ranked in the order they
+   * were added to the FarmCollection.
+   * @param fc the FarmCollection to rank
+   * @param k the largest number of farms to rank
+   * @param weightOf gives the weight of the farm at a position in fc over the period
+   * @return the top k farms, or every farm if there are fewer than k
+   * @throws IllegalArgumentException if k is less than 1
+   */
+  static FarmRanking rank(FarmCollection fc, int k, IntToLongFunction weightOf) {
+    List<Farm> farms = fc.getFarmCollection();
+    return rank(farms.size(), index -> farms.get(index).getFarmId(), k, weightOf);
+  }
+  
+  /**
+   * Ranks farms known only by position, such as those of a FarmCollectionView. Farms with equal
+   * weights are ranked by position.
+   * @param farmCount the number of farms, at positions 0 to farmCount - 1
+   * @param farmIdOf gives the name of the farm at a position
+   * @param k the largest number of farms to rank
+   * @param weightOf gives the weight of the farm at a position over the period
+   * @return the top k farms, or every farm if there are fewer than k
+   * @throws IllegalArgumentException if k is less than 1
+   */
+  static FarmRanking rank(int farmCount, IntFunction<String> farmIdOf, int k,
+      IntToLongFunction weightOf) {
+    if (k < 1) {
+      throw new IllegalArgumentException("At least one farm must be ranked.");
+    }
+    int[] heap = new int[Math.min(k, farmCount)]; // farm positions, lightest at the root
+    long[] heapWeights = new long[heap.length];
+    int size = 0;
+    long total = 0;
+    
+    for (int farm = 0; farm < farmCount; farm++) {
+      long weight = weightOf.applyAsLong(farm);
+      total += weight;
+      if (size < heap.length) { // still filling the heap, so sift the new farm up
+        int i = size++;
+        while (i > 0 && lighter(farm, weight, heap[(i - 1) / 2], heapWeights[(i - 1) / 2])) {
+          heap[i] = heap[(i - 1) / 2];
+          heapWeights[i] = heapWeights[(i - 1) / 2];
+          i = (i - 1) / 2;
+        }
+        heap[i] = farm;
+        heapWeights[i] = weight;
+      }
+      else if (weight > heapWeights[0]) { // replace the lightest and sift it down
+        siftDown(heap, heapWeights, size, farm, weight);
+      }
+    }
+    
+    // pop the heap from lightest to heaviest, filling the ranking from the back
+    String[] farmIds = new String[size];
+    int[] farmIndexes = new int[size];
+    long[] weights = new long[size];
+    for (int last = size - 1; last >= 0; last--) {
+      farmIds[last] = farmIdOf.apply(heap[0]);
+      farmIndexes[last] = heap[0];
+      weights[last] = heapWeights[0];
+      siftDown(heap, heapWeights, last, heap[last], heapWeights[last]);
+    }
+    return new FarmRanking(farmIds, farmIndexes, weights, total);
+  }
+  
+  /**
+   * Places a farm at the root of a min-heap and moves it down until the heap is ordered again.
+   * Of two farms with equal weights, the one added later is treated as lighter.
+   * @param heap the farm positions in the heap
+   * @param heapWeights the weight of each farm in the heap
+   * @param size the number of farms in the heap
+   * @param farm the position of the farm to place
+   * @param weight the weight of the farm to place
+   */
+  private static void siftDown(int[] heap, long[] heapWeights, int size, int farm, long weight) {
+    int i = 0;
+    while (2 * i + 1 < size) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && lighter(heap[child + 1], heapWeights[child + 1], heap[child],
+          heapWeights[child])) {
+        child++;
+      }
+      if (!lighter(heap[child], heapWeights[child], farm, weight)) {
+        break;
+      }
+      heap[i] = heap[child];
+      heapWeights[i] = heapWeights[child];
+      i = child;
+    }
+    heap[i] = farm;
+    heapWeights[i] = weight;
+  }
+  
+  /**
+   * Compares two farms by weight, breaking ties so that the farm added later is lighter.
+   * @param farm the position of the first farm
+   * @param weight the weight of the first farm
+   * @param otherFarm the position of the second farm
+   * @param otherWeight the weight of the second farm
+   * @return whether the first farm is lighter than the second
+   */
+  private static boolean lighter(int farm, long weight, int otherFarm, long otherWeight) {
+    return weight < otherWeight || (weight == otherWeight && farm > otherFarm);
+  }
+  
+  /**
+   * Returns the number of farms ranked.
+   * @return the number of farms
+   */
+  public int size() {
+    return farmIds.length;
+  }
+  
+  /**
+   * Returns the name of the farm at a rank.
+   * @param rank the rank, from 0 for the heaviest farm
+   * @return the name of the farm
+   */
+  public String getFarmId(int rank) {
+    return farmIds[rank];
+  }
+  
+  /**
+   * Returns the position of the farm at a rank, in the FarmCollection or view it was ranked from.
+   * @param rank the rank, from 0 for the heaviest farm
+   * @return the position of the farm
+   */
+  public int getFarmIndex(int rank) {
+    return farmIndexes[rank];
+  }
+  
+  /**
+   * Returns the weight of the farm at a rank over the period.
+   * @param rank the rank, from 0 for the heaviest farm
+   * @return the weight of the farm
+   */
+  public long getWeight(int rank) {
+    return weights[rank];
+  }
+  
+  /**
+   * Returns the share of the period's total weight produced by the farm at a rank.
+   * @param rank the rank, from 0 for the heaviest farm
+   * @return the share of the total, from 0 to 1, or 0 if the total is 0
+   */
+  public double getShare(int rank) {
+    if (total == 0) {
+      return 0;
+    }
+    return (double) weights[rank] / total;
+  }
+  
+  /**
+   * Returns the weight of every farm over the period, ranked or not.
+   * @return the total weight
+   */
+  public long getTotal() {
+    return total;
+  }
+  
+  /**
+   * Returns the weight of every farm over the period that did not make the ranking.
+   * @return the weight of the unranked farms
+   */
+  public long getOtherWeight() {
+    long other = total;
+    for (long weight : weights) {
+      other -= weight;
+    }
+    return other;
+  }
+}
@@ -0,0 +1,274 @@
+package application;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves a FarmCollection to, and loads it from, a compact binary file. A snapshot holds the farm
+ * dictionary, followed by every farm's years and months; each month is stored as its precomputed
+ * totals plus primitive arrays of days and weights. Loading maps the file into memory and copies
+ * the arrays in bulk, with no parsing and no recomputation of totals.
+ * 
+ * <p>Layout, all big-endian: the int MAGIC, the int VERSION, the number of farms, then every
+ * farm ID as a short length and UTF-8 bytes. Then, for each farm in the same order, its number of
+ * years, and for each year the year itself followed by twelve months of: count, sum (a long), min,
+ * max, count days and count weights.
+ */
+public class FarmSnapshot {
+  private static final int MAGIC = 0x4D494C4B; // "MILK"
+  private static final int VERSION = 1;
+  private static final int MONTHS = 12;
+  private static final int FARM_BYTES = Short.BYTES; // the least a farm ID can take up
+  private static final int YEAR_BYTES = Integer.BYTES // the least a year can take up
+      + MONTHS * (3 * Integer.BYTES + Long.BYTES);
+  private static final int ROW_BYTES = 2 * Integer.BYTES; // a day and a weight
+  private static final int MAX_FARM_ID_BYTES = 0xFFFF; // the longest farm ID a short can hold
+  
+  /**
+   * Writes a snapshot of a FarmCollection.
+   * @param fc the FarmCollection to save
+   * @param file the file to write the snapshot to
+   * @throws IOException if the file cannot be written, or if a farm ID is longer than
+   *    MAX_FARM_ID_BYTES in UTF-8, in which case the file is left untouched
+   */
+  public static void save(FarmCollection fc, File file) throws IOException {
+    List<Farm> farms = fc.getFarmCollection();
+    List<byte[]> farmIds = new ArrayList<>(farms.size());
+    for (Farm f : farms) { // checked before the file is opened, so a refusal leaves it as it was
+      byte[] farmId = f.getFarmId().getBytes(StandardCharsets.UTF_8);
+      if (farmId.length > MAX_FARM_ID_BYTES) {
+        throw new IOException("Farm ID " + f.getFarmId().substring(0, 20) + "... is "
+            + farmId.length + " bytes long, more than a snapshot can hold.");
+      }
+      farmIds.add(farmId);
+    }
+    
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(farms.size());
+      for (byte[] farmId : farmIds) {
+        out.writeShort(farmId.length);
+        out.write(farmId);
+      }
+      
+      for (Farm f : farms) {
+        List<FarmYear> years = f.getYearList();
+        out.writeInt(years.size());
+        for (FarmYear fy : years) {
+          out.writeInt(fy.getYear());
+          for (int month = 0; month < MONTHS; month++) {
+            out.writeInt(fy.countInMonth(month));
+            out.writeLong(fy.sumOfWeightInMonth(month));
+            out.writeInt(fy.minWeightInMonth(month));
+            out.writeInt(fy.maxWeightInMonth(month));
+            for (int day : fy.daysInMonth(month)) {
+              out.writeInt(day);
+            }
+            for (int weight : fy.weightsInMonth(month)) {
+              out.writeInt(weight);
+            }
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * Loads a snapshot into a FarmCollection. The whole snapshot is first restored into an empty
+   * partial FarmCollection, each year directly from the snapshot's arrays; only once it has all
+   * been read and checked is the partial merged into fc, or simply taken over if fc holds no farms
+   * yet. A snapshot that fails to load therefore leaves fc as it was.
+   * @param file the snapshot to load
+   * @param fc the FarmCollection to load into
+   * @throws IOException if the file cannot be read or is not a valid snapshot, or if its weights
+   *    are refused by the DuplicatePolicy of fc, in which case nothing is loaded
+   */
+  public static void load(File file, FarmCollection fc) throws IOException {
+    FarmCollection partial = fc.newPartial();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot is too large to be mapped.");
+      }
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buf.getInt() != MAGIC) {
+        throw new IOException(file.getName() + " is not a Milk Weights snapshot.");
+      }
+      int version = buf.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version " + version + ".");
+      }
+      
+      int farmCount = readCount(buf, FARM_BYTES);
+      List<String> farmIds = new ArrayList<>(farmCount);
+      for (int i = 0; i < farmCount; i++) {
+        byte[] farmId = new byte[buf.getShort() & 0xFFFF];
+        buf.get(farmId);
+        farmIds.add(new String(farmId, StandardCharsets.UTF_8));
+      }
+      
+      for (String farmId : farmIds) {
+        int index = partial.findOrAddFarm(farmId);
+        int yearCount = readCount(buf, YEAR_BYTES);
+        for (int y = 0; y < yearCount; y++) {
+          loadYear(buf, partial, index);
+        }
+      }
+      
+      if (fc.getFarmCollection().isEmpty()) {
+        fc.takeOver(partial);
+      }
+      else {
+        fc.merge(partial);
+      }
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException(file.getName() + " ends unexpectedly.", e);
+    }
+    catch (IllegalArgumentException e) { // a weight refused by the DuplicatePolicy
+      throw new IOException("Could not load " + file.getName() + ": " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Reads the number of entries that follow in a snapshot, checking it with checkCount.
+   * @param buf the snapshot, positioned at the count
+   * @param bytesEach the fewest bytes each entry can take up
+   * @return the number of entries
+   * @throws IOException if the count is negative or the snapshot is too short to hold it
+   */
+  private static int readCount(MappedByteBuffer buf, int bytesEach) throws IOException {
+    return checkCount(buf, buf.getInt(), bytesEach);
+  }
+  
+  /**
+   * Checks that the rest of a snapshot is long enough to hold a number of entries, so a corrupt
+   * count is reported rather than allocated.
+   * @param buf the snapshot, positioned at the first entry
+   * @param count the number of entries
+   * @param bytesEach the fewest bytes each entry can take up
+   * @return the number of entries
+   * @throws IOException if the count is negative or the snapshot is too short to hold it
+   */
+  private static int checkCount(MappedByteBuffer buf, int count, int bytesEach)
+      throws IOException {
+    if (count < 0 || count > buf.remaining() / bytesEach) {
+      throw new IOException("Snapshot holds an impossible count of " + count + ".");
+    }
+    return count;
+  }
+  
+  /**
+   * Reads one year of a snapshot into a Farm. The totals stored for each month are checked
+   * against the weights they were computed from, so a damaged snapshot is not trusted.
+   * @param buf the snapshot, positioned at the start of the year
+   * @param fc the FarmCollection being loaded into
+   * @param index the position of the Farm the year belongs to
+   * @throws IOException if the year holds a count, a date or a total that cannot be right
+   * @throws IllegalArgumentException if the year's weights are refused by the DuplicatePolicy
+   */
+  private static void loadYear(MappedByteBuffer buf, FarmCollection fc, int index)
+      throws IOException {
+    Farm f = fc.getFarmCollection().get(index);
+    int year = buf.getInt();
+    FarmYear fy = f.findYear(year);
+    boolean restore = fy == null;
+    if (restore) {
+      f.addYear(year);
+      fy = f.findYear(year);
+    }
+    
+    for (int month = 0; month < MONTHS; month++) {
+      int count = buf.getInt();
+      long sum = buf.getLong();
+      int min = buf.getInt();
+      int max = buf.getInt();
+      checkCount(buf, count, ROW_BYTES);
+      int[] days = readInts(buf, count);
+      int[] weights = readInts(buf, count);
+      for (int day : days) {
+        if (!MilkStat.isValidDate(year, month, day)) {
+          throw new IOException("Snapshot holds an invalid date " + (month + 1) + "/" + day + "/"
+              + year + ".");
+        }
+      }
+      if (sum != sumOf(weights) || min != minOf(weights) || max != maxOf(weights)) {
+        throw new IOException("Snapshot totals for " + (month + 1) + "/" + year + " of "
+            + f.getFarmId() + " do not match its weights.");
+      }
+      
+      if (restore) {
+        fy.restoreMonth(month, days, weights, sum, min, max, f.getFarmId());
+        fc.addToCube(index, year, month, fy.sumOfWeightInMonth(month));
+      }
+      else {
+        for (int i = 0; i < count; i++) {
+          fc.addMilkWeight(year, month, days[i], f.getFarmId(), weights[i]);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Returns the sum of an array of weights.
+   * @param weights the weights
+   * @return the sum of the weights, or 0 if there are none
+   */
+  private static long sumOf(int[] weights) {
+    long sum = 0;
+    for (int weight : weights) {
+      sum += weight;
+    }
+    return sum;
+  }
+  
+  /**
+   * Returns the smallest of an array of weights.
+   * @param weights the weights
+   * @return the smallest weight, or 0 if there are none
+   */
+  private static int minOf(int[] weights) {
+    int min = weights.length == 0 ? 0 : weights[0];
+    for (int weight : weights) {
+      min = Math.min(min, weight);
+    }
+    return min;
+  }
+  
+  /**
+   * Returns the largest of an array of weights.
+   * @param weights the weights
+   * @return the largest weight, or 0 if there are none
+   */
+  private static int maxOf(int[] weights) {
+    int max = weights.length == 0 ? 0 : weights[0];
+    for (int weight : weights) {
+      max = Math.max(max, weight);
+    }
+    return max;
+  }
+  
+  /**
+   * Copies an array of ints out of a snapshot in one bulk operation.
+   * @param buf the snapshot, positioned at the start of the array
+   * @param count the number of ints in the array
+   * @return the array
+   */
+  private static int[] readInts(MappedByteBuffer buf, int count) {
+    int[] values = new int[count];
+    buf.asIntBuffer().get(values);
+    buf.position(buf.position() + count * Integer.BYTES);
+    return values;
+  }
+}
@@ -1,14 +1,27 @@
 package application;
 
+import java.time.Year;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 public class FarmYear {
   private static final String[] MONTH_LIST = {"January", "February", "March", "April", "May",
       "June", "July", "August", "September", "October", "November", "December"};
+  static final int DAYS_IN_YEAR = 366; // every year is laid out as a leap year
+  private static final int[] MONTH_STARTS = {0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305,
+      335, 366}; // the day of the year each month starts on, in a leap year, then the year's end
   private int year; // the year this FarmYear represents
-  private List<ArrayList<MilkStat>> farmYear; // a collection of MilkStat lists representing 12 months
+  private YearStorage storage; // the weights of this FarmYear, as MilkStats, columns or day slots
+  private Farm farm; // the farm this FarmYear belongs to, when backed by columns or day slots
+  private DuplicatePolicy policy; // how a second weight for a day is handled, when day-slotted
+  private long[] monthSums = new long[MONTH_LIST.length]; // running weight total of each month
+  private int[] monthCounts = new int[MONTH_LIST.length]; // number of MilkStats in each month
+  private int[] monthMins = new int[MONTH_LIST.length]; // smallest weight in each month
+  private int[] monthMaxes = new int[MONTH_LIST.length]; // largest weight in each month
+  private long yearSum; // running weight total of the whole year
+  private int yearCount; // number of MilkStats in the whole year
+  private volatile FenwickTree dayTotals; // weight total of each day, made on the first query
+  private WeightSketch[] monthSketches = new WeightSketch[MONTH_LIST.length]; // made on first query
   
   /**
    * Constructs a new FarmYear representing the given year.
@@ -16,35 +29,560 @@ public class FarmYear {
    */
   public FarmYear(int year) {
     this.year = year;
-    farmYear = new ArrayList<ArrayList<MilkStat>>();
-    
+    storage = new MilkStatStorage();
+  }
+  
+  /**
+   * Constructs a new FarmYear whose MilkStats are stored as rows in the given columns rather than
+   * as objects.
+   * @param year the year this FarmYear will represent
+   * @param farm the farm this FarmYear belongs to
+   * @param columns the columns to store rows in
+   */
+  FarmYear(int year, Farm farm, MilkColumns columns) {
+    this.year = year;
+    this.farm = farm;
+    storage = new ColumnStorage(columns);
+  }
+  
+  /**
+   * Constructs a new day-slotted FarmYear, which keeps at most one weight per day in a fixed array
+   * of 366 slots rather than a list per month. Weights can be added, replaced and removed by date
+   * in O(1) time, and a second weight for the same day is handled by the given policy.
+   * @param year the year this FarmYear will represent
+   * @param policy how to handle a weight for a day that already has one
+   */
+  public FarmYear(int year, DuplicatePolicy policy) {
+    this(year, null, policy);
+  }
+  
+  /**
+   * Constructs a new day-slotted FarmYear belonging to a Farm.
+   * @param year the year this FarmYear will represent
+   * @param farm the farm this FarmYear belongs to
+   * @param policy how to handle a weight for a day that already has one
+   */
+  FarmYear(int year, Farm farm, DuplicatePolicy policy) {
+    this.year = year;
+    this.farm = farm;
+    this.policy = policy;
+    storage = new DaySlotStorage();
+  }
+  
+  /**
+   * Add a MilkStat to this FarmYear, sorted based on the month it occured in. A day-slotted
+   * FarmYear applies its DuplicatePolicy if the day already has a weight; any other FarmYear keeps
+   * both MilkStats, counting the day twice.
+   * @param ms the MilkStat to be added
+   * @return the amount the total weight of the year changed by
+   * @throws IllegalArgumentException if the day already has a weight and the policy is REJECT,
+   *    or the policy is SUM and the day's total would overflow
+   */
+  public long addMilkStat(MilkStat ms) {
+    int month = ms.getMonth();
+    int day = ms.getDay();
+    checkDate(month, day);
+    if (policy != null && storage.hasWeightOnDay(month, day)) {
+      return addToTakenDay(month, day, ms.getWeight());
+    }
+    updateTotals(month, day, ms.getWeight());
+    storage.add(ms); // storage holding only primitives keeps just the primitive fields of ms
+    return ms.getWeight();
+  }
+  
+  /**
+   * Add a weight to this FarmYear given as primitives. A FarmYear backed by columns or day slots
+   * stores it without building a MilkStat; any other FarmYear builds one to hold it.
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @param farmId the name of the farm the weight belongs to
+   * @return the amount the total weight of the year changed by
+   * @throws IllegalArgumentException if the date does not exist, or if the day already has a
+   *    weight and the policy is REJECT, or the policy is SUM and the day's total would overflow
+   */
+  public long addMilkWeight(int month, int day, int weight, String farmId) {
+    checkDate(month, day); // checked before any total changes
+    if (policy != null && storage.hasWeightOnDay(month, day)) {
+      return addToTakenDay(month, day, weight);
+    }
+    updateTotals(month, day, weight);
+    storage.add(year, month, day, weight, farmId);
+    return weight;
+  }
+  
+  /**
+   * Applies the DuplicatePolicy to a weight for a day of a day-slotted FarmYear that already has
+   * one.
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @return the amount the total weight of the year changed by
+   * @throws IllegalArgumentException if the policy is REJECT, or the policy is SUM and the day's
+   *    total would overflow
+   */
+  private long addToTakenDay(int month, int day, int weight) {
+    switch (policy) {
+      case SUM:
+        return setDay(month, day, addToDayWeight(month, day, storage.getWeightOnDay(month, day),
+            weight));
+      case REPLACE:
+        return setDay(month, day, weight);
+      default:
+        throw new IllegalArgumentException("A weight was already recorded on " + (month + 1) + "/"
+            + day + "/" + year + ".");
+    }
+  }
+  
+  /**
+   * Adds a weight to the total already recorded for a day under the SUM policy.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @param total the total recorded for the day so far
+   * @param weight the weight to add
+   * @return the new total
+   * @throws IllegalArgumentException if the total would not fit in an int
+   */
+  private int addToDayWeight(int month, int day, long total, int weight) {
+    try {
+      return Math.toIntExact(total + weight);
+    }
+    catch (ArithmeticException e) {
+      throw new IllegalArgumentException("The weights recorded on " + (month + 1) + "/" + day
+          + "/" + year + " add up to more than " + Integer.MAX_VALUE + ".", e);
+    }
+  }
+  
+  /**
+   * Changes the weight of a day that already has one, adjusting every total by the difference.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @param weight the new weight
+   * @return the amount the total weight of the year changed by
+   */
+  private long setDay(int month, int day, int weight) {
+    long delta = (long) weight - storage.getWeightOnDay(month, day);
+    storage.setWeightOnDay(month, day, weight);
+    monthSums[month] += delta;
+    yearSum += delta;
+    addToDay(month, day, delta);
+    rescanMonth(month);
+    return delta;
+  }
+  
+  /**
+   * Removes the weight recorded on a day of a day-slotted FarmYear.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return the amount the total weight of the year changed by, which is 0 if the day had no weight
+   * @throws UnsupportedOperationException if this FarmYear is not day-slotted
+   */
+  public long removeMilkWeight(int month, int day) {
+    if (!hasWeightOnDay(month, day)) {
+      return 0;
+    }
+    int weight = storage.getWeightOnDay(month, day);
+    storage.removeWeightOnDay(month, day);
+    monthSums[month] -= weight;
+    monthCounts[month]--;
+    yearSum -= weight;
+    yearCount--;
+    addToDay(month, day, -weight);
+    rescanMonth(month);
+    return -weight;
+  }
+  
+  /**
+   * Returns whether a day of a day-slotted FarmYear has a weight recorded.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return whether the day has a weight
+   * @throws UnsupportedOperationException if this FarmYear is not day-slotted
+   */
+  public boolean hasWeightOnDay(int month, int day) {
+    checkDate(month, day);
+    return storage.hasWeightOnDay(month, day);
+  }
+  
+  /**
+   * Returns the weight recorded on a day of a day-slotted FarmYear.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return the weight of the day, or 0 if it has none
+   * @throws UnsupportedOperationException if this FarmYear is not day-slotted
+   */
+  public int getWeightOnDay(int month, int day) {
+    checkDate(month, day);
+    return storage.getWeightOnDay(month, day);
+  }
+  
+  /**
+   * Checks that a date of this year exists.
+   * @param month the month of the date, from 0-11
+   * @param day the day of the month
+   * @throws IllegalArgumentException if the date does not exist
+   */
+  private void checkDate(int month, int day) {
+    if (!MilkStat.isValidDate(year, month, day)) {
+      throw new IllegalArgumentException("Invalid date " + (month + 1) + "/" + day + "/" + year
+          + ".");
+    }
+  }
+  
+  /**
+   * Recomputes the smallest and largest weight of a month of a day-slotted FarmYear after a
+   * weight was changed or removed, rebuilding its sketch too if it has one, since a sketch cannot
+   * forget a weight. A month has at most 31 days, so this takes constant time.
+   * @param month the month to rescan
+   */
+  private void rescanMonth(int month) {
+    int[] weights = weightsInMonth(month);
+    int min = weights.length == 0 ? 0 : weights[0];
+    int max = min;
+    WeightSketch sketch = monthSketches[month] == null ? null : new WeightSketch();
+    for (int weight : weights) {
+      min = Math.min(min, weight);
+      max = Math.max(max, weight);
+      if (sketch != null) {
+        sketch.add(weight);
+      }
+    }
+    monthMins[month] = min;
+    monthMaxes[month] = max;
+    monthSketches[month] = sketch;
+  }
+  
+  /**
+   * Hands every weight in this FarmYear to a sink as primitives, month by month, without boxing
+   * or building MilkStats.
+   * @param sink the sink to receive each weight
+   * @param farmId the name of the farm this FarmYear belongs to
+   */
+  public void forEachWeight(MilkSink sink, String farmId) {
     for (int month = 0; month < MONTH_LIST.length; month++) {
-      farmYear.add(new ArrayList<MilkStat>());
+      for (int position : positionsInMonth(month)) {
+        sink.accept(year, month, storage.dayAt(month, position), farmId,
+            storage.weightAt(month, position));
+      }
     }
   }
   
   /**
-   * Add a MilkStat to this FarmYear, sorted based on the month it occured in. Adding two MilkStats
-   * representing the same date is discouraged, as it may result in unexpected behavior.
-   * @param ms the MilkStat to be added
+   * Adds every MilkStat of another FarmYear to this one, keeping their order within each month.
+   * The other FarmYear is not changed. MilkStats held by the other FarmYear are added as they are.
+   * @param other the FarmYear to copy MilkStats from
+   * @param farmId the name of the farm both FarmYears belong to
+   * @throws IllegalArgumentException if this FarmYear is day-slotted with the REJECT policy and
+   *    the other has a weight for a day this one already has, or with the SUM policy and a day's
+   *    total would overflow
    */
-  public void addMilkStat(MilkStat ms) {
-    Calendar date = ms.getDate();
-    int monthNum = date.get(Calendar.MONTH);
-    List<MilkStat> monthList = farmYear.get(monthNum);
-    monthList.add(ms);
+  public void merge(FarmYear other, String farmId) {
+    for (int month = 0; month < MONTH_LIST.length; month++) {
+      for (int position : other.positionsInMonth(month)) {
+        MilkStat ms = other.storage.milkStatAt(month, position);
+        if (ms != null) {
+          addMilkStat(ms);
+        }
+        else {
+          addMilkWeight(month, other.storage.dayAt(month, position),
+              other.storage.weightAt(month, position), farmId);
+        }
+      }
+    }
   }
   
   /**
-   * Returns the sum of the weight of every MilkStat in this FarmYear.
-   * @return the sum of every MilkStat
+   * Checks that merge(other) would not be refused, without changing anything. Only a day-slotted
+   * FarmYear refuses weights: with the REJECT policy when a day would be given a second one, and
+   * with the SUM policy when a day's total would overflow, whether because of this FarmYear's
+   * weights or other's alone.
+   * @param other the FarmYear that would be merged
+   * @throws IllegalArgumentException if merge(other) would be refused
+   */
+  void checkMerge(FarmYear other) {
+    if (policy != DuplicatePolicy.SUM && policy != DuplicatePolicy.REJECT) {
+      return;
+    }
+    long[] totals = new long[DAYS_IN_YEAR]; // each day's total so far in the pretend merge
+    boolean[] taken = new boolean[DAYS_IN_YEAR]; // the days filled so far by the pretend merge
+    forEachWeight((y, month, day, id, weight) -> {
+      totals[dayOfYear(month, day)] = weight;
+      taken[dayOfYear(month, day)] = true;
+    }, null);
+    other.forEachWeight((y, month, day, id, weight) -> {
+      int slot = dayOfYear(month, day);
+      if (policy == DuplicatePolicy.REJECT && taken[slot]) {
+        throw new IllegalArgumentException("A weight was already recorded on " + (month + 1)
+            + "/" + day + "/" + year + ".");
+      }
+      totals[slot] = addToDayWeight(month, day, totals[slot], weight);
+      taken[slot] = true;
+    }, null);
+  }
+  
+  /**
+   * Returns the day of the month of every MilkStat in a given month, in the order they were added.
+   * @param month the month to list
+   * @return the days of the month
+   */
+  int[] daysInMonth(int month) {
+    int[] days = positionsInMonth(month);
+    for (int i = 0; i < days.length; i++) {
+      days[i] = storage.dayAt(month, days[i]);
+    }
+    return days;
+  }
+  
+  /**
+   * Returns the weight of every MilkStat in a given month, in the order they were added.
+   * @param month the month to list
+   * @return the weights of the month
+   */
+  int[] weightsInMonth(int month) {
+    int[] weights = positionsInMonth(month);
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = storage.weightAt(month, weights[i]);
+    }
+    return weights;
+  }
+  
+  /**
+   * Returns where each MilkStat of a given month is held, in the same order as daysInMonth. A
+   * day-slotted FarmYear holds each at the slot of its day, counted from the start of the month;
+   * any other holds them in the order they were added.
+   * @param month the month to list
+   * @return the position of each MilkStat, to be read back with weightAt
+   */
+  int[] positionsInMonth(int month) {
+    return storage.positionsInMonth(month, monthCounts[month]);
+  }
+  
+  /**
+   * Returns the weight held at a position of a month, as listed by positionsInMonth. The weight is
+   * read from storage, so it reflects any change made since the position was listed.
+   * @param month the month of the weight
+   * @param position the position of the weight within the month
+   * @return the weight, or 0 if a day-slotted FarmYear no longer holds one there
    */
-  public int sumOfWeightInYear() {
-    int weightSum = 0;
+  int weightAt(int month, int position) {
+    return storage.weightAt(month, position);
+  }
+  
+  /**
+   * Fills an empty month with weights whose totals are already known, as when loading a
+   * snapshot, so the totals need not be recomputed. A day-slotted FarmYear instead adds each
+   * weight under its DuplicatePolicy, in case the snapshot holds more than one weight for a day.
+   * @param month the month to fill, from 0-11
+   * @param days the day of the month of each weight
+   * @param weights the weights, in the same order as days
+   * @param sum the sum of weights
+   * @param min the smallest of weights
+   * @param max the largest of weights
+   * @param farmId the name of the farm this FarmYear belongs to
+   * @throws IllegalStateException if the month already holds MilkStats
+   */
+  void restoreMonth(int month, int[] days, int[] weights, long sum, int min, int max,
+      String farmId) {
+    if (monthCounts[month] != 0) {
+      throw new IllegalStateException("Only an empty month can be restored.");
+    }
+    if (policy != null) {
+      for (int i = 0; i < weights.length; i++) {
+        addMilkWeight(month, days[i], weights[i], farmId);
+      }
+      return;
+    }
+    for (int i = 0; i < weights.length; i++) {
+      storage.add(year, month, days[i], weights[i], farmId);
+      addToDay(month, days[i], weights[i]);
+      addToSketch(month, weights[i]);
+    }
+    monthSums[month] = sum;
+    monthCounts[month] = weights.length;
+    monthMins[month] = min;
+    monthMaxes[month] = max;
+    yearSum += sum;
+    yearCount += weights.length;
+  }
+  
+  /**
+   * Folds a newly added weight into the running totals of its day, its month and the year.
+   * @param month the month the weight was recorded in
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight that was added
+   */
+  private void updateTotals(int month, int day, int weight) {
+    addToDay(month, day, weight);
+    addToSketch(month, weight);
+    if (monthCounts[month] == 0) {
+      monthMins[month] = weight;
+      monthMaxes[month] = weight;
+    }
+    else {
+      monthMins[month] = Math.min(monthMins[month], weight);
+      monthMaxes[month] = Math.max(monthMaxes[month], weight);
+    }
+    monthSums[month] += weight;
+    monthCounts[month]++;
+    yearSum += weight;
+    yearCount++;
+  }
+  
+  /**
+   * Adds a weight to the running total of the day it was recorded on. Until the first range
+   * query there are no day totals to keep, so adding costs nothing.
+   * @param month the month the weight was recorded in
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight that was added, or the change in the day's weight
+   */
+  private void addToDay(int month, int day, long weight) {
+    FenwickTree totals = dayTotals;
+    if (totals != null) {
+      totals.add(dayOfYear(month, day), weight);
+    }
+  }
+  
+  /**
+   * Adds a weight to the sketch of its month. Until the month's first quantile query there is no
+   * sketch to keep, so the weight is stored only once, in the month itself.
+   * @param month the month the weight was recorded in
+   * @param weight the weight that was added
+   */
+  private void addToSketch(int month, int weight) {
+    if (monthSketches[month] != null) {
+      monthSketches[month].add(weight);
+    }
+  }
+  
+  /**
+   * Builds the day totals from every weight already added. Called on the first range query;
+   * from then on they are kept up to date as weights are added. Range queries may run on several
+   * threads at once, as under the read locks of ConcurrentFarmCollection, so only one of them
+   * builds the totals, and they are published only once they are complete.
+   * @return the day totals
+   */
+  private synchronized FenwickTree buildDayTotals() {
+    if (dayTotals != null) { // built by another query while this one waited
+      return dayTotals;
+    }
+    FenwickTree totals = new FenwickTree(DAYS_IN_YEAR);
+    for (int month = 0; month < MONTH_LIST.length; month++) {
+      int[] days = daysInMonth(month);
+      int[] weights = weightsInMonth(month);
+      for (int i = 0; i < days.length; i++) {
+        totals.add(dayOfYear(month, days[i]), weights[i]);
+      }
+    }
+    dayTotals = totals;
+    return totals;
+  }
+  
+  /**
+   * Adds the weight recorded on each day of this year to an array indexed by day, from January 1st.
+   * Only the days the year really has are used, so in a year that is not a leap year the days from
+   * March 1st on are moved back one to close the gap left for February 29th.
+   * @param dest the array to add to, which must hold every day of the year from offset on
+   * @param offset the index in dest of January 1st
+   */
+  public void addDailyWeights(long[] dest, int offset) {
+    boolean leap = Year.isLeap(year);
+    for (int month = 0; month < MONTH_LIST.length; month++) {
+      int[] days = daysInMonth(month);
+      int[] weights = weightsInMonth(month);
+      for (int i = 0; i < days.length; i++) {
+        int slot = dayOfYear(month, days[i]);
+        if (!leap && slot > 59) { // close the gap left for February 29th
+          slot--;
+        }
+        dest[offset + slot] += weights[i];
+      }
+    }
+  }
+  
+  /**
+   * Returns the slot a date occupies in the day totals. Every year is laid out as a leap year, so
+   * February 29th always has a slot and March 1st is always slot 60.
+   * @param month the month of the date, from 0-11
+   * @param day the day of the month of the date
+   * @return the day of the year, from 0-365
+   */
+  static int dayOfYear(int month, int day) {
+    return MONTH_STARTS[month] + day - 1;
+  }
+  
+  /**
+   * Returns the sum of the weight of every MilkStat recorded between two dates of this year,
+   * including both. Takes O(log n) time regardless of how many MilkStats are in the range.
+   * @param fromMonth the month of the first date, from 0-11
+   * @param fromDay the day of the month of the first date
+   * @param toMonth the month of the last date, from 0-11
+   * @param toDay the day of the month of the last date
+   * @return the sum of every MilkStat in the range, or 0 if the last date is before the first
+   */
+  public long sumOfWeightBetween(int fromMonth, int fromDay, int toMonth, int toDay) {
+    FenwickTree totals = dayTotals;
+    if (totals == null) {
+      totals = buildDayTotals();
+    }
+    return totals.sum(dayOfYear(fromMonth, fromDay), dayOfYear(toMonth, toDay));
+  }
+  
+  /**
+   * Returns the live sketch of the weights of a month. The sketch is built from the month's
+   * weights on its first query, and from then on is kept up to date as weights are added,
+   * replaced or removed, so the month's rows are read only once. Queries may run on several
+   * threads at once, as under the read locks of ConcurrentFarmCollection, so the sketch is built
+   * by one of them while holding this FarmYear's lock.
+   * @param month the month, from 0-11
+   * @return the sketch of the month
+   */
+  synchronized WeightSketch monthSketch(int month) {
+    if (monthSketches[month] == null) {
+      WeightSketch sketch = new WeightSketch();
+      for (int weight : weightsInMonth(month)) {
+        sketch.add(weight);
+      }
+      monthSketches[month] = sketch;
+    }
+    return monthSketches[month];
+  }
+  
+  /**
+   * Returns a summary of the weights in a given month: their mean, standard deviation and
+   * quantiles such as the median or 90th percentile, to within about 1% of rank. The month's rows
+   * are read once, on its first query; from then on the sketch is kept up to date as MilkStats are
+   * added or changed, so no rows are read or sorted.
+   * @param month the month to summarize
+   * @return a copy of the sketch of the month
+   */
+  public WeightSketch sketchOfMonth(int month) {
+    WeightSketch sketch = new WeightSketch();
+    if (monthCounts[month] > 0) {
+      sketch.merge(monthSketch(month));
+    }
+    return sketch;
+  }
+  
+  /**
+   * Returns a summary of the weights in this FarmYear, merged from the sketches of its months.
+   * @return a sketch of the year
+   */
+  public WeightSketch sketchOfYear() {
+    WeightSketch sketch = new WeightSketch();
     for (int month = 0; month < MONTH_LIST.length; month++) {
-      weightSum += sumOfWeightInMonth(month);
+      if (monthCounts[month] > 0) {
+        sketch.merge(monthSketch(month));
+      }
     }
-    return weightSum;
+    return sketch;
+  }
+  
+  /**
+   * Returns the sum of the weight of every MilkStat in this FarmYear.
+   * @return the sum of every MilkStat
+   */
+  public long sumOfWeightInYear() {
+    return yearSum;
   }
   
   /**
@@ -52,14 +590,75 @@ public class FarmYear {
    * @param month the month to sum the MilkStats for
    * @return the sum of every MilkStat in a month
    */
-  public int sumOfWeightInMonth(int month) {
-    ArrayList<MilkStat> monthList = farmYear.get(month);
-    int weightSum = 0;
-    
-    for (MilkStat ms : monthList) {
-      weightSum += ms.getWeight();
+  public long sumOfWeightInMonth(int month) {
+    return monthSums[month];
+  }
+  
+  /**
+   * Returns the number of MilkStats in this FarmYear.
+   * @return the number of MilkStats in the year
+   */
+  public int countInYear() {
+    return yearCount;
+  }
+  
+  /**
+   * Returns the number of MilkStats in a given month.
+   * @param month the month to count the MilkStats for
+   * @return the number of MilkStats in a month
+   */
+  public int countInMonth(int month) {
+    return monthCounts[month];
+  }
+  
+  /**
+   * Returns the smallest weight of any MilkStat in a given month.
+   * @param month the month to search
+   * @return the smallest weight in the month, or 0 if the month has no MilkStats
+   */
+  public int minWeightInMonth(int month) {
+    return monthMins[month];
+  }
+  
+  /**
+   * Returns the largest weight of any MilkStat in a given month.
+   * @param month the month to search
+   * @return the largest weight in the month, or 0 if the month has no MilkStats
+   */
+  public int maxWeightInMonth(int month) {
+    return monthMaxes[month];
+  }
+  
+  /**
+   * Returns the smallest weight of any MilkStat in this FarmYear.
+   * @return the smallest weight in the year, or 0 if the year has no MilkStats
+   */
+  public int minWeightInYear() {
+    int min = 0;
+    boolean found = false;
+    for (int month = 0; month < MONTH_LIST.length; month++) {
+      if (monthCounts[month] > 0 && (!found || monthMins[month] < min)) {
+        min = monthMins[month];
+        found = true;
+      }
     }
-    return weightSum;
+    return min;
+  }
+  
+  /**
+   * Returns the largest weight of any MilkStat in this FarmYear.
+   * @return the largest weight in the year, or 0 if the year has no MilkStats
+   */
+  public int maxWeightInYear() {
+    int max = 0;
+    boolean found = false;
+    for (int month = 0; month < MONTH_LIST.length; month++) {
+      if (monthCounts[month] > 0 && (!found || monthMaxes[month] > max)) {
+        max = monthMaxes[month];
+        found = true;
+      }
+    }
+    return max;
   }
   
   /**
@@ -70,7 +669,7 @@ public class FarmYear {
   public String toString() {
     String str = "";
     for (int month = 0; month < MONTH_LIST.length; month++) {
-      str += MONTH_LIST[month] + ": " + farmYear.get(month).toString() + "\n";
+      str += MONTH_LIST[month] + ": " + getFarmYear().get(month).toString() + "\n";
     }
     return str;
   }
@@ -106,11 +705,19 @@ public class FarmYear {
   }
   
   /**
-   * Get the List of MilkStat Lists this FarmYear represents.
+   * Get the List of MilkStat Lists this FarmYear represents. If this FarmYear is backed by
+   * columns or day slots, the MilkStats are built from them and changing them has no effect. Otherwise
+   * changes made directly to the lists are not reflected in the totals of this FarmYear; use
+   * addMilkStat instead.
    * @return the list of MilkStat Lists
    */
   public List<ArrayList<MilkStat>> getFarmYear() {
-    return farmYear;
+    String farmId = farm == null ? "" : farm.getFarmId();
+    List<ArrayList<MilkStat>> view = new ArrayList<ArrayList<MilkStat>>();
+    for (int month = 0; month < MONTH_LIST.length; month++) {
+      view.add(storage.milkStatsInMonth(year, month, farmId, positionsInMonth(month)));
+    }
+    return view;
   }
 
 }
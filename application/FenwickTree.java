@@ -0,0 +1,63 @@
+package application;
+
+/**
+ * A Fenwick tree (binary indexed tree) of long totals. Adding to a slot and summing a range of
+ * slots both take O(log n) time, so running totals can be queried over any range without
+ * rescanning the values that make them up.
+ */
+public class FenwickTree {
+  private long[] tree; // partial sums, 1-based; tree[i] covers the lowest set bit of i slots
+  
+  /**
+   * Constructs a new FenwickTree with every slot set to 0.
+   * @param size the number of slots
+   */
+  public FenwickTree(int size) {
+    tree = new long[size + 1];
+  }
+  
+  /**
+   * Adds a value to a slot.
+   * @param slot the slot to add to, from 0 to size() - 1
+   * @param value the value to add
+   */
+  public void add(int slot, long value) {
+    for (int i = slot + 1; i < tree.length; i += i & -i) {
+      tree[i] += value;
+    }
+  }
+  
+  /**
+   * Returns the sum of every slot from 0 up to and including the given slot.
+   * @param slot the last slot to include; anything below 0 gives 0
+   * @return the sum of the slots
+   */
+  public long sumTo(int slot) {
+    long sum = 0;
+    for (int i = Math.min(slot + 1, tree.length - 1); i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+  
+  /**
+   * Returns the sum of every slot in a range.
+   * @param from the first slot to include
+   * @param to the last slot to include
+   * @return the sum of the slots, or 0 if to is before from
+   */
+  public long sum(int from, int to) {
+    if (to < from) {
+      return 0;
+    }
+    return sumTo(to) - sumTo(from - 1);
+  }
+  
+  /**
+   * Returns the number of slots in this FenwickTree.
+   * @return the number of slots
+   */
+  public int size() {
+    return tree.length - 1;
+  }
+}
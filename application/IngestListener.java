@@ -0,0 +1,44 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives progress reports from a FarmIngestor while it loads files in the background.
+ */
+public interface IngestListener {
+  
+  /**
+   * Called after each batch of rows has been published to the FarmCollection.
+   * @param file the file currently being loaded
+   * @param rows the number of rows loaded so far, across every file
+   * @param bytes the number of bytes read so far, across every file
+   * @param totalBytes the total number of bytes in every file being loaded
+   */
+  void progress(File file, long rows, long bytes, long totalBytes);
+  
+  /**
+   * Called when a file cannot be loaded, or a batch of it is refused by the FarmCollection. Rows
+   * of the file published before the error remain in the FarmCollection; a refused batch leaves
+   * nothing behind.
+   * @param file the file that could not be loaded
+   * @param e the reason why
+   */
+  void failed(File file, IOException e);
+  
+  /**
+   * Called when a file has been loaded leniently but some of its lines were rejected. Every other
+   * line of the file has been loaded.
+   * @param file the file with rejected lines
+   * @param errors the rejected lines, with their line numbers and reasons
+   * @param sidecar the file the rejected lines were written to, or null if it could not be
+   *    written
+   */
+  void rejected(File file, ParseErrors errors, File sidecar);
+  
+  /**
+   * Called once every file has been loaded or has failed.
+   * @param rows the number of rows loaded, across every file
+   */
+  void finished(long rows);
+}
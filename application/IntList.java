@@ -0,0 +1,81 @@
+package application;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints. Used in place of an ArrayList of Integers wherever large
+ * amounts of data are stored, since it avoids boxing every element.
+ */
+public class IntList {
+  private static final int DEFAULT_CAPACITY = 16;
+  private int[] values; // the backing array, grown as needed
+  private int size; // the number of values actually stored
+  
+  /**
+   * Constructs a new empty IntList.
+   */
+  public IntList() {
+    this(DEFAULT_CAPACITY);
+  }
+  
+  /**
+   * Constructs a new empty IntList with room for the given number of values.
+   * @param capacity the initial capacity of this IntList
+   */
+  public IntList(int capacity) {
+    values = new int[Math.max(capacity, 1)];
+  }
+  
+  /**
+   * Adds a value to the end of this IntList.
+   * @param value the value to be added
+   */
+  public void add(int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = value;
+  }
+  
+  /**
+   * Returns the value at the given position.
+   * @param index the position of the value
+   * @return the value at index
+   * @throws IndexOutOfBoundsException if index is not less than size()
+   */
+  public int get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    return values[index];
+  }
+  
+  /**
+   * Replaces the value at the given position.
+   * @param index the position of the value
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if index is not less than size()
+   */
+  public void set(int index, int value) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    values[index] = value;
+  }
+  
+  /**
+   * Returns the number of values in this IntList.
+   * @return the number of values
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Returns a copy of the values in this IntList, trimmed to size.
+   * @return an array of every value
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
@@ -0,0 +1,141 @@
+package application;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of how long some operation takes. Latencies are counted in buckets by powers of
+ * two of nanoseconds, so recording one is a few atomic additions with no allocation or locking,
+ * and percentiles are accurate to within a factor of two. Safe to record into from any thread.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+  private static final int BUCKETS = 64; // one for every power of two a long can hold
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+  private final String name; // what is being timed, for the log line
+  private final AtomicLongArray buckets; // bucket b counts latencies from 2^b to 2^(b+1) - 1 ns
+  private final LongAdder count; // the number of latencies recorded
+  private final LongAdder totalNanos; // the sum of every latency recorded
+  private final LongAccumulator maxNanos; // the longest latency recorded
+  
+  /**
+   * Constructs a new empty LatencyHistogram.
+   * @param name what is being timed, such as "farm report"
+   */
+  public LatencyHistogram(String name) {
+    this.name = name;
+    buckets = new AtomicLongArray(BUCKETS);
+    count = new LongAdder();
+    totalNanos = new LongAdder();
+    maxNanos = new LongAccumulator(Math::max, 0);
+  }
+  
+  /**
+   * Records the time since an operation started.
+   * @param startNanos the value of System.nanoTime() when the operation started
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+  
+  /**
+   * Records one latency.
+   * @param nanos the latency in nanoseconds; negative latencies are counted as 0
+   */
+  public void record(long nanos) {
+    nanos = Math.max(0, nanos);
+    buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+  
+  /**
+   * Returns a latency that a given share of the latencies recorded are no longer than. The upper
+   * bound of the bucket holding that latency is returned, capped at the longest latency recorded.
+   * @param quantile the share of latencies, from 0 to 1
+   * @return the latency in milliseconds, or 0 if none were recorded
+   */
+  public double percentileMillis(double quantile) {
+    long total = 0;
+    long[] counts = new long[BUCKETS]; // read once, as recording may go on meanwhile
+    for (int b = 0; b < BUCKETS; b++) {
+      counts[b] = buckets.get(b);
+      total += counts[b];
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts[b];
+      if (seen > 0 && seen >= rank) {
+        long upper = b == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+        return Math.min(upper, maxNanos.get()) / NANOS_PER_MILLI;
+      }
+    }
+    return 0;
+  }
+  
+  /**
+   * Returns what is being timed.
+   * @return the name of this histogram
+   */
+  public String getName() {
+    return name;
+  }
+  
+  /**
+   * Returns the number of latencies recorded.
+   * @return the number of latencies
+   */
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+  
+  /**
+   * Returns the mean of the latencies recorded.
+   * @return the mean latency in milliseconds, or 0 if none were recorded
+   */
+  @Override
+  public double getMeanMillis() {
+    long n = count.sum();
+    return n == 0 ? 0 : totalNanos.sum() / NANOS_PER_MILLI / n;
+  }
+  
+  /**
+   * Returns the median of the latencies recorded, to within a factor of two.
+   * @return the median latency in milliseconds, or 0 if none were recorded
+   */
+  @Override
+  public double getMedianMillis() {
+    return percentileMillis(0.5);
+  }
+  
+  /**
+   * Returns the 99th percentile of the latencies recorded, to within a factor of two.
+   * @return the 99th percentile latency in milliseconds, or 0 if none were recorded
+   */
+  @Override
+  public double getP99Millis() {
+    return percentileMillis(0.99);
+  }
+  
+  /**
+   * Returns the longest latency recorded.
+   * @return the longest latency in milliseconds, or 0 if none were recorded
+   */
+  @Override
+  public double getMaxMillis() {
+    return maxNanos.get() / NANOS_PER_MILLI;
+  }
+  
+  /**
+   * Returns a one-line summary of this histogram, for the periodic log line.
+   * @return the name, count, median, 99th percentile and longest latency
+   */
+  @Override
+  public String toString() {
+    return String.format("%s n=%d p50=%.2fms p99=%.2fms max=%.2fms", name, getCount(),
+        getMedianMillis(), getP99Millis(), getMaxMillis());
+  }
+}
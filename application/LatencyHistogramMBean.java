@@ -0,0 +1,37 @@
+package application;
+
+/**
+ * The attributes of a LatencyHistogram published over JMX.
+ */
+public interface LatencyHistogramMBean {
+  
+  /**
+   * Returns the number of latencies recorded.
+   * @return the number of latencies
+   */
+  long getCount();
+  
+  /**
+   * Returns the mean of the latencies recorded.
+   * @return the mean latency in milliseconds, or 0 if none were recorded
+   */
+  double getMeanMillis();
+  
+  /**
+   * Returns the median of the latencies recorded, to within a factor of two.
+   * @return the median latency in milliseconds, or 0 if none were recorded
+   */
+  double getMedianMillis();
+  
+  /**
+   * Returns the 99th percentile of the latencies recorded, to within a factor of two.
+   * @return the 99th percentile latency in milliseconds, or 0 if none were recorded
+   */
+  double getP99Millis();
+  
+  /**
+   * Returns the longest latency recorded.
+   * @return the longest latency in milliseconds, or 0 if none were recorded
+   */
+  double getMaxMillis();
+}
@@ -1,25 +1,29 @@
 package application;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
@@ -36,6 +40,7 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Callback;
 
 /**
  * The main driver class for Milk Weights, processing user data and displaying it in a GUI.
@@ -51,13 +56,34 @@ public class Main extends Application {
       + "that the date is in YYYY-MM-DD format and that weight is numeric.";
   public static List<File> inputFiles = new ArrayList<>();
   public static File outputFile = new File("");
-  public static FarmCollection fc = new FarmCollection();
+  public static FarmCollection fc = new FarmCollection(DuplicatePolicy.REPLACE); // one weight a day
+  private static final File JOURNAL_FILE = new File("milk-journal.csv"); // every manual entry
+  private static FarmIngestor ingestor; // loads files in the background, publishing to fc
+  private static ReportCache reports = new ReportCache(fc); // recently generated reports of fc
+  private static final int REPORT_FARMS = 20; // farms drawn individually in reports of all farms
+  private static int reportOffset; // the rank of the first farm drawn in reports of all farms
+  private static MilkTable browseRows; // the rows of the Browse Data tab, as of its last refresh
+  private static MilkJournal journal; // records manual entries to JOURNAL_FILE
+  private static MilkJournal outputJournal; // records manual entries to outputFile
   
   /**
    * Creates the GUI for the application.
    */
   @Override
   public void start(Stage primaryStage) throws Exception {    
+    try { // restore manual entries from earlier sessions, then keep recording them
+      MilkJournal.replay(JOURNAL_FILE, fc);
+      journal = new MilkJournal(JOURNAL_FILE);
+    } catch (IOException e) {
+      Alert ioAlert = new Alert(AlertType.ERROR);
+      ioAlert.setTitle("Error");
+      ioAlert.setHeaderText("File Error");
+      ioAlert.setContentText(IO_ERROR + "\n" + JOURNAL_FILE.getName() + ": " + e.getMessage());
+      ioAlert.show();
+    }
+    fc.publish(); // reports read from published views
+    MilkMetrics.start(fc); // JMX MBeans and a periodic log line
+    
     // INPUT TAB
     Tab inputTab = new Tab("Add Data");
     inputTab.setStyle("-fx-background-color: darkorange;");
@@ -97,17 +123,10 @@ public class Main extends Application {
                   }
                   fileText.setText(label);
 
+                  List<File> csvFiles = new ArrayList<>();
                   for (File inputFile : inputFiles) {
                     if (isCSV(inputFile)) {
-                      try {
-                        fc.addFile(inputFile);
-                      } catch (IOException e) {
-                        Alert ioAlert = new Alert(AlertType.ERROR);
-                        ioAlert.setTitle("Error");
-                        ioAlert.setHeaderText("File Error");
-                        ioAlert.setContentText(IO_ERROR);
-                        ioAlert.show();
-                      }
+                      csvFiles.add(inputFile);
                     }
                     else {
                       Alert csvAlert = new Alert(AlertType.ERROR);
@@ -117,6 +136,8 @@ public class Main extends Application {
                       csvAlert.show();
                     }
                   }
+                  
+                  ingestor.ingest(csvFiles); // loaded in the background, see ingestListener
                 }
               }
             };
@@ -125,6 +146,97 @@ public class Main extends Application {
             fileAndLabel.getChildren().add(fileText);
         inputBoxes.getChildren().add(fileAndLabel);
         
+        HBox progressBox = new HBox(10);
+          ProgressBar loadProgress = new ProgressBar(0);
+          Label progressText = new Label("");
+          progressBox.getChildren().add(loadProgress);
+          progressBox.getChildren().add(progressText);
+          IngestListener ingestListener = new IngestListener() {
+            @Override
+            public void progress(File file, long rows, long bytes, long totalBytes) {
+              loadProgress.setProgress(totalBytes == 0 ? 1 : (double) bytes / totalBytes);
+              progressText.setText(String.format("Loading %s: %,d rows, %,d of %,d KB",
+                  file.getName(), rows, bytes / 1024, totalBytes / 1024));
+            }
+            
+            @Override
+            public void failed(File file, IOException e) {
+              Alert ioAlert = new Alert(AlertType.ERROR);
+              ioAlert.setTitle("Error");
+              ioAlert.setHeaderText("File Error");
+              ioAlert.setContentText(IO_ERROR + "\n" + file.getName() + ": " + e.getMessage());
+              ioAlert.show();
+            }
+            
+            @Override
+            public void rejected(File file, ParseErrors errors, File sidecar) {
+              Alert rejectAlert = new Alert(AlertType.WARNING);
+              rejectAlert.setTitle("Warning");
+              rejectAlert.setHeaderText("Some lines were skipped");
+              rejectAlert.setContentText(file.getName() + ": " + errors + (sidecar == null ? ""
+                  : "\nEvery skipped line is listed in " + sidecar.getName() + "."));
+              rejectAlert.show();
+            }
+            
+            @Override
+            public void finished(long rows) {
+              loadProgress.setProgress(1);
+              progressText.setText(String.format("Loaded %,d rows", rows));
+            }
+          };
+          ingestor = new FarmIngestor(fc, Platform::runLater, ingestListener, true); // lenient
+        inputBoxes.getChildren().add(progressBox);
+        
+        HBox snapshotBox = new HBox(10);
+          FileChooser snapshotChooser = new FileChooser();
+          snapshotChooser.setInitialDirectory(new File(System.getProperty("user.dir"))); // open in working directory
+          Label snapshotText = new Label("Save or restore all loaded data");
+          Button snapshotSaveButton = new Button("Save Session");
+            EventHandler<MouseEvent> onSnapshotSavePress = new EventHandler<MouseEvent>() {
+              @Override
+              public void handle(MouseEvent click) {
+                File snapshotFile = snapshotChooser.showSaveDialog(primaryStage);
+                if (snapshotFile != null) {
+                  try {
+                    fc.saveSnapshot(snapshotFile);
+                    snapshotText.setText("Saved to " + snapshotFile.getAbsolutePath());
+                  } catch (IOException e) {
+                    Alert ioAlert = new Alert(AlertType.ERROR);
+                    ioAlert.setTitle("Error");
+                    ioAlert.setHeaderText("File Error");
+                    ioAlert.setContentText(IO_ERROR);
+                    ioAlert.show();
+                  }
+                }
+              }
+            };
+            snapshotSaveButton.setOnMouseReleased(onSnapshotSavePress);
+          Button snapshotLoadButton = new Button("Load Session");
+            EventHandler<MouseEvent> onSnapshotLoadPress = new EventHandler<MouseEvent>() {
+              @Override
+              public void handle(MouseEvent click) {
+                File snapshotFile = snapshotChooser.showOpenDialog(primaryStage);
+                if (snapshotFile != null) {
+                  try {
+                    fc.loadSnapshot(snapshotFile);
+                    fc.publish();
+                    snapshotText.setText("Loaded " + snapshotFile.getAbsolutePath());
+                  } catch (IOException e) {
+                    Alert ioAlert = new Alert(AlertType.ERROR);
+                    ioAlert.setTitle("Error");
+                    ioAlert.setHeaderText("File Error");
+                    ioAlert.setContentText(IO_ERROR + "\n" + e.getMessage());
+                    ioAlert.show();
+                  }
+                }
+              }
+            };
+            snapshotLoadButton.setOnMouseReleased(onSnapshotLoadPress);
+          snapshotBox.getChildren().add(snapshotSaveButton);
+          snapshotBox.getChildren().add(snapshotLoadButton);
+          snapshotBox.getChildren().add(snapshotText);
+        inputBoxes.getChildren().add(snapshotBox);
+        
         TableView<MilkStat> dataTable = new TableView<>();
           TableColumn<MilkStat, String> dateColumn = new TableColumn<>("Date");
           dateColumn.setCellValueFactory(new PropertyValueFactory<>("dateString"));
@@ -170,6 +282,21 @@ public class Main extends Application {
                     csvAlert.setContentText(CSV_ERROR);
                     csvAlert.show();
                   }
+                  else {
+                    try {
+                      if (outputJournal != null) {
+                        outputJournal.close();
+                      }
+                      outputJournal = new MilkJournal(outputFile); // kept open between entries
+                    } catch (IOException e) {
+                      outputJournal = null;
+                      Alert ioAlert = new Alert(AlertType.ERROR);
+                      ioAlert.setTitle("Error");
+                      ioAlert.setHeaderText("File Error");
+                      ioAlert.setContentText(IO_ERROR);
+                      ioAlert.show();
+                    }
+                  }
                 }
               }
             };
@@ -190,17 +317,14 @@ public class Main extends Application {
               int weight = Integer.valueOf(weightText);
               MilkStat newStat = new MilkStat(date, id, weight);
               fc.addMilkStat(newStat);
+              fc.publish();
+              dataTable.getItems().add(newStat);
 
-              Calendar displayDate = (Calendar) date.clone();
-              displayDate.set(Calendar.MONTH, date.get(Calendar.MONTH) + 1);
-              MilkStat displayStat = new MilkStat(displayDate, id, weight);
-              dataTable.getItems().add(displayStat);
-
-              if (outputCb.isSelected() && isCSV(outputFile)) {
-                FileWriter append = new FileWriter(outputFile, true);
-                String appendStr = dateText + "," + id + "," + weightText;
-                append.write(appendStr);
-                append.close();
+              if (journal != null) {
+                journal.append(newStat);
+              }
+              if (outputCb.isSelected() && outputJournal != null) {
+                outputJournal.append(newStat);
               }
             }
             catch (NumberFormatException e) {
@@ -258,7 +382,14 @@ public class Main extends Application {
             RadioButton monthRadioButton = new RadioButton("Month");
               monthRadioButton.setToggleGroup(timeButtons);
             TextField monthField = new TextField();
+          HBox dailyButtonBox = new HBox(10);
+            RadioButton dailyRadioButton = new RadioButton("Daily to year:");
+              dailyRadioButton.setToggleGroup(timeButtons);
+            TextField toYearField = new TextField();
+            dailyButtonBox.getChildren().addAll(dailyRadioButton, toYearField);
             Button generateButton = new Button("Generate");
+            Button otherButton = new Button("Show Other");
+              otherButton.setDisable(true);
             EventHandler<MouseEvent> onGeneratePress = new EventHandler<MouseEvent>() {
               @Override
               public void handle(MouseEvent click) {
@@ -268,14 +399,33 @@ public class Main extends Application {
                 try {
                   HBox graph = new HBox();
                   graph.getChildren().removeAll();
+                  if (timeSelect == dailyRadioButton) { // every day from Year to this year
+                    String fromYear = yearField.getText();
+                    String toYear = toYearField.getText();
+                    if (isNumeric(fromYear) && isNumeric(toYear)
+                        && Integer.valueOf(fromYear) <= Integer.valueOf(toYear)) {
+                      LineChart<Number, Number> lc = farmSelect == oneRadioButton
+                          ? MilkGraph.constructDailyReport(fc.getFarm(oneFarmField.getText()),
+                              Integer.valueOf(fromYear), Integer.valueOf(toYear))
+                          : MilkGraph.constructDailyReport(fc, Integer.valueOf(fromYear),
+                              Integer.valueOf(toYear));
+                      lc.setMinWidth(WINDOW_WIDTH);
+                      graph.getChildren().add(lc);
+                      outputPane.setCenter(graph);
+                    }
+                    otherButton.setDisable(true);
+                    return;
+                  }
                   BarChart<String, Number> bc = new BarChart<String, Number>(new CategoryAxis(), 
                       new NumberAxis());
+                  MilkReport collectionReport = null; // the report of all farms, if one is drawn
                   if (farmSelect == allRadioButton) {
                     if (timeSelect == yearRadioButton) {
                       String year = yearField.getText();
                       if (isNumeric(year)) {
-                        bc = MilkGraph.constructFarmCollectionReport(fc, 
-                            Integer.valueOf(year));
+                        collectionReport = reports.farmCollectionReport(Integer.valueOf(year),
+                            reportOffset, REPORT_FARMS);
+                        bc = MilkGraph.toBarChart(collectionReport);
                       }
                     }
                     else if (timeSelect == monthRadioButton) {
@@ -284,19 +434,21 @@ public class Main extends Application {
                       if (isNumeric(year) && isNumeric (month)) {
                         int monthNum = Integer.valueOf(month) - 1; // January = 1
                         if (0 <= monthNum && monthNum < 12) {
-                          bc = MilkGraph.constructMonthlyFarmCollectionReport(fc, 
-                              Integer.valueOf(year), monthNum);
+                          collectionReport = reports.monthlyFarmCollectionReport(
+                              Integer.valueOf(year), monthNum, reportOffset, REPORT_FARMS);
+                          bc = MilkGraph.toBarChart(collectionReport);
                         }
                       }
                     }
                   }
                   else if (farmSelect == oneRadioButton) {
-                    Farm reportFarm = fc.getFarm(oneFarmField.getText());
+                    String reportFarm = oneFarmField.getText();
                     String year = yearField.getText();
 
                     if (timeSelect == yearRadioButton) {
                       if (isNumeric(year)) {
-                        bc = MilkGraph.constructFarmReport(reportFarm, Integer.valueOf(year));
+                        bc = MilkGraph.toBarChart(reports.farmReport(reportFarm,
+                            Integer.valueOf(year)));
                       }
                     }
 
@@ -305,12 +457,15 @@ public class Main extends Application {
                       if (isNumeric(year) && isNumeric(month)) {
                         int monthNum = Integer.valueOf(monthField.getText()) - 1;
                         if (0 <= monthNum && monthNum < 12) {
-                          bc = MilkGraph.constructMonthlyFarmReport(reportFarm,
-                              Integer.valueOf(yearField.getText()), monthNum);
+                          bc = MilkGraph.toBarChart(reports.monthlyFarmReport(reportFarm,
+                              Integer.valueOf(yearField.getText()), monthNum));
                         }
                       }
                     }
                   }
+                  // only reports of all farms have an "Other" group to drill into
+                  otherButton.setDisable(collectionReport == null
+                      || collectionReport.getOtherFarmCount() == 0);
                   bc.setMinWidth(WINDOW_WIDTH);
                   graph.getChildren().add(bc);
                   outputPane.setCenter(graph);
@@ -320,9 +475,24 @@ public class Main extends Application {
                 }
               }
             };
-            generateButton.setOnMouseClicked(onGeneratePress);
-            monthButtonBox.getChildren().addAll(monthRadioButton, monthField, generateButton);
-          timeOptions.getChildren().addAll(timeLabel, yearButtonBox, monthButtonBox);
+            generateButton.setOnMouseClicked(new EventHandler<MouseEvent>() {
+              @Override
+              public void handle(MouseEvent click) {
+                reportOffset = 0; // start again from the heaviest farms
+                onGeneratePress.handle(click);
+              }
+            });
+            otherButton.setOnMouseClicked(new EventHandler<MouseEvent>() {
+              @Override
+              public void handle(MouseEvent click) {
+                reportOffset += REPORT_FARMS; // the farms that were rolled into "Other"
+                onGeneratePress.handle(click);
+              }
+            });
+            monthButtonBox.getChildren().addAll(monthRadioButton, monthField, generateButton,
+                otherButton);
+          timeOptions.getChildren().addAll(timeLabel, yearButtonBox, monthButtonBox,
+              dailyButtonBox);
           
           outputOptions.getChildren().addAll(farmOptions, timeOptions);
             
@@ -332,10 +502,94 @@ public class Main extends Application {
         
     outputTab.setContent(outputPane);
     
+    // BROWSE TAB
+    Tab browseTab = new Tab("Browse Data");
+    
+      BorderPane browsePane = new BorderPane();
+      
+      HBox browseOptions = new HBox(10);
+        browseOptions.setPadding(new Insets(10));
+        TextField browseFarmField = new TextField();
+          browseFarmField.setPromptText("Farm ID...");
+        TextField browseYearField = new TextField();
+          browseYearField.setPromptText("Year...");
+        TextField browseMonthField = new TextField();
+          browseMonthField.setPromptText("Month...");
+        Button browseFilterButton = new Button("Filter");
+        Button browseRefreshButton = new Button("Refresh");
+        Label browseCountText = new Label();
+        
+      // rows are fetched from browseRows only as they scroll into view, and sorted there
+      TableView<Integer> browseTable = new TableView<>();
+        TableColumn<Integer, String> browseIdColumn = new TableColumn<>("Farm ID");
+        browseIdColumn.setUserData(MilkTable.FARM); // the MilkTable column it sorts by
+        browseIdColumn.setCellValueFactory(row ->
+            new ReadOnlyStringWrapper(browseRows.getFarmId(row.getValue())));
+        TableColumn<Integer, String> browseDateColumn = new TableColumn<>("Date");
+        browseDateColumn.setUserData(MilkTable.DATE);
+        browseDateColumn.setCellValueFactory(row ->
+            new ReadOnlyStringWrapper(browseRows.getDateString(row.getValue())));
+        TableColumn<Integer, String> browseWeightColumn = new TableColumn<>("Weight");
+        browseWeightColumn.setUserData(MilkTable.WEIGHT);
+        browseWeightColumn.setCellValueFactory(row ->
+            new ReadOnlyStringWrapper(String.valueOf(browseRows.getWeight(row.getValue()))));
+        browseTable.getColumns().add(browseIdColumn);
+        browseTable.getColumns().add(browseDateColumn);
+        browseTable.getColumns().add(browseWeightColumn);
+        browseTable.setSortPolicy(new Callback<TableView<Integer>, Boolean>() {
+          @Override
+          public Boolean call(TableView<Integer> table) {
+            if (table.getSortOrder().isEmpty()) {
+              browseRows.sort(-1, true);
+            }
+            else {
+              TableColumn<Integer, ?> column = table.getSortOrder().get(0);
+              browseRows.sort((Integer) column.getUserData(), // columns may have been reordered
+                  column.getSortType() == TableColumn.SortType.ASCENDING);
+            }
+            table.refresh();
+            return true;
+          }
+        });
+        
+        EventHandler<MouseEvent> onBrowseFilterPress = new EventHandler<MouseEvent>() {
+          @Override
+          public void handle(MouseEvent click) {
+            String farmId = browseFarmField.getText().trim();
+            String year = browseYearField.getText().trim();
+            String month = browseMonthField.getText().trim();
+            browseRows.filter(farmId.isEmpty() ? null : farmId,
+                isNumeric(year) ? Integer.valueOf(year) : -1,
+                isNumeric(month) ? Integer.valueOf(month) - 1 : -1); // January = 1
+            browseTable.setItems(FXCollections.observableList(browseRows.rows()));
+            browseCountText.setText(browseRows.size() + " of " + browseRows.getRowCount()
+                + " rows");
+          }
+        };
+        browseFilterButton.setOnMouseClicked(onBrowseFilterPress);
+        browseRows = new MilkTable(fc);
+        onBrowseFilterPress.handle(null);
+        browseRefreshButton.setOnMouseClicked(new EventHandler<MouseEvent>() {
+          @Override
+          public void handle(MouseEvent click) {
+            browseRows = new MilkTable(fc); // picks up everything added since the last refresh
+            onBrowseFilterPress.handle(click);
+            browseTable.sort();
+          }
+        });
+        browseOptions.getChildren().addAll(browseFarmField, browseYearField, browseMonthField,
+            browseFilterButton, browseRefreshButton, browseCountText);
+        
+      browsePane.setTop(browseOptions);
+      browsePane.setCenter(browseTable);
+      
+    browseTab.setContent(browsePane);
+    
     TabPane tabPane = new TabPane();
     tabPane.setTabClosingPolicy(TabClosingPolicy.UNAVAILABLE);
     tabPane.getTabs().add(inputTab);
     tabPane.getTabs().add(outputTab);
+    tabPane.getTabs().add(browseTab);
     tabPane.setTabMinWidth(WINDOW_WIDTH / tabPane.getTabs().size() - 20);
     tabPane.setTabMaxWidth(WINDOW_WIDTH / tabPane.getTabs().size() - 20);
     
@@ -350,6 +604,23 @@ public class Main extends Application {
     primaryStage.show();
   }
   
+  /**
+   * Stops any background loading and commits any pending journal entries when the application
+   * closes.
+   * @throws IOException if pending journal entries cannot be written
+   */
+  @Override
+  public void stop() throws IOException {
+    ingestor.shutdown();
+    MilkMetrics.stop();
+    if (journal != null) {
+      journal.close();
+    }
+    if (outputJournal != null) {
+      outputJournal.close();
+    }
+  }
+  
   /**
    * Begins the application.
    * @param args the command line arguments
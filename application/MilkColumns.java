@@ -0,0 +1,106 @@
+package application;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * A columnar store of milk weights. Instead of keeping one MilkStat per row, every row is spread
+ * across two parallel int columns: the day it was recorded on (as days since 1970-01-01) and the
+ * weight itself. The farm a row belongs to is not stored, since each FarmYear keeps the list of
+ * its own rows, at 4 more bytes per row. A row therefore costs 12 bytes in all, less than half
+ * of what a MilkStat and the reference to it take up.
+ */
+public class MilkColumns {
+  private static final int DEFAULT_CAPACITY = 1024;
+  private int[] epochDays; // the day each row was recorded on
+  private int[] weights; // the weight of each row
+  private int size; // the number of rows stored
+  
+  /**
+   * Constructs a new empty MilkColumns.
+   */
+  public MilkColumns() {
+    epochDays = new int[DEFAULT_CAPACITY];
+    weights = new int[DEFAULT_CAPACITY];
+  }
+  
+  /**
+   * Adds a row to the end of these columns.
+   * @param epochDay the day the weight was recorded on, in days since 1970-01-01
+   * @param weight the weight of milk recorded
+   * @return the index of the new row
+   */
+  public int add(int epochDay, int weight) {
+    if (size == weights.length) {
+      int capacity = size * 2;
+      epochDays = Arrays.copyOf(epochDays, capacity);
+      weights = Arrays.copyOf(weights, capacity);
+    }
+    epochDays[size] = epochDay;
+    weights[size] = weight;
+    return size++;
+  }
+  
+  /**
+   * Returns the day a row was recorded on.
+   * @param row the index of the row
+   * @return the day of the row, in days since 1970-01-01
+   */
+  public int getEpochDay(int row) {
+    checkRow(row);
+    return epochDays[row];
+  }
+  
+  /**
+   * Returns the weight of a row.
+   * @param row the index of the row
+   * @return the weight of the row
+   */
+  public int getWeight(int row) {
+    checkRow(row);
+    return weights[row];
+  }
+  
+  /**
+   * Returns the number of rows stored in these columns.
+   * @return the number of rows
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Builds a MilkStat representing a row. The MilkStat is a copy; changing it does not change
+   * the row.
+   * @param row the index of the row
+   * @param farmId the name of the farm the row belongs to
+   * @return a MilkStat with the properties of the row
+   */
+  public MilkStat toMilkStat(int row, String farmId) {
+    LocalDate date = LocalDate.ofEpochDay(getEpochDay(row));
+    return new MilkStat(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth(), farmId,
+        weights[row]);
+  }
+  
+  /**
+   * Converts a date into the number of days since 1970-01-01.
+   * @param year the year of the date
+   * @param month the month of the date, from 0-11
+   * @param day the day of the month of the date
+   * @return the number of days since 1970-01-01
+   */
+  public static int toEpochDay(int year, int month, int day) {
+    return (int) LocalDate.of(year, month + 1, day).toEpochDay();
+  }
+  
+  /**
+   * Makes sure a row index refers to a row that has been added.
+   * @param row the index to check
+   * @throws IndexOutOfBoundsException if row is not a valid row
+   */
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+    }
+  }
+}
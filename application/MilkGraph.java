@@ -1,16 +1,25 @@
 package application;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
+import javafx.beans.value.ChangeListener;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
+import javafx.util.StringConverter;
 
 /**
- * A class to generate BarCharts representing MilkStats, for use in the GUI.
+ * A class to generate BarCharts representing MilkStats, for use in the GUI. The data for each
+ * chart is built by MilkReport.
  * @author Sean
  */
 public class MilkGraph {
+  private static final int DEFAULT_POINTS = 800; // points drawn before a chart has been laid out
+  private static final double ZOOM_STEP = 0.8; // the share of the days still shown per zoom in
+  private static final int MIN_ZOOM_DAYS = 7; // the fewest days a daily chart can zoom in to
   
   /**
    * Constructs a BarChart visualizing the MilkStats of one farm, per month, for a given year.
@@ -19,21 +28,10 @@ public class MilkGraph {
    * @return a BarChart visualizing MilkStats over the year
    */
   public static BarChart<String, Number> constructFarmReport(Farm farm, int year) {
-    CategoryAxis xAxis = new CategoryAxis();
-    NumberAxis yAxis = new NumberAxis();
-    yAxis.setLabel("Weight");
-    
-    BarChart<String, Number> farmReport = new BarChart<>(xAxis, yAxis);
-    FarmYear reportYear = farm.findYear(year);
-    XYChart.Series<String, Number> dataSeries = new XYChart.Series<>();
-    dataSeries.setName(farm.getFarmId());
-    for (int month = 0; month < 12; month++) {
-      dataSeries.getData().add(new XYChart.Data<String, Number>(FarmYear.getMonthName(month), 
-          reportYear.sumOfWeightInMonth(month)));
-    }
-    farmReport.getData().add(dataSeries);
-    
-    return farmReport;
+    long start = System.nanoTime();
+    BarChart<String, Number> chart = toBarChart(MilkReport.farmReport(farm, year));
+    MilkMetrics.FARM_REPORT.recordSince(start);
+    return chart;
   }
   
   /**
@@ -45,19 +43,10 @@ public class MilkGraph {
    * @return a BarChart visualizing MilkStats of a month
    */
   public static BarChart<String, Number> constructMonthlyFarmReport(Farm farm, int year, int month) {
-    CategoryAxis xAxis = new CategoryAxis();
-    NumberAxis yAxis = new NumberAxis();
-    yAxis.setLabel("Weight");
-    
-    BarChart<String, Number> farmReport = new BarChart<>(xAxis, yAxis);
-    FarmYear reportYear = farm.findYear(year);
-    XYChart.Series<String, Number> dataSeries = new XYChart.Series<>();
-    dataSeries.setName(farm.getFarmId());
-    dataSeries.getData().add(new XYChart.Data<String, Number>(FarmYear.getMonthName(month), 
-        reportYear.sumOfWeightInMonth(month)));
-    farmReport.getData().add(dataSeries);
-    
-    return farmReport;
+    long start = System.nanoTime();
+    BarChart<String, Number> chart = toBarChart(MilkReport.monthlyFarmReport(farm, year, month));
+    MilkMetrics.MONTHLY_FARM_REPORT.recordSince(start);
+    return chart;
   }
   
   /**
@@ -67,24 +56,10 @@ public class MilkGraph {
    * @return a BarChart visualizing MilkStats of a year
    */
   public static BarChart<String, Number> constructFarmCollectionReport(FarmCollection fc, int year) {
-    ArrayList<Farm> farmList = fc.getFarmCollection();
-    
-    CategoryAxis xAxis = new CategoryAxis();
-    NumberAxis yAxis = new NumberAxis();
-    yAxis.setLabel("Weight");
-    
-    BarChart<String, Number> farmCollectionReport = new BarChart<>(xAxis, yAxis);
-    for (Farm f : farmList) {
-      FarmYear reportYear = f.findYear(year);
-      XYChart.Series<String, Number> dataSeries = new XYChart.Series<>();
-      dataSeries.setName(f.getFarmId());
-      for (int month = 0; month < 12; month++) {
-        dataSeries.getData().add(new XYChart.Data<String, Number>(FarmYear.getMonthName(month), 
-            reportYear.sumOfWeightInMonth(month)));
-      }
-      farmCollectionReport.getData().add(dataSeries);
-    }
-    return farmCollectionReport;
+    long start = System.nanoTime();
+    BarChart<String, Number> chart = toBarChart(MilkReport.farmCollectionReport(fc, year));
+    MilkMetrics.FARM_COLLECTION_REPORT.recordSince(start);
+    return chart;
   }
   
   /**
@@ -96,21 +71,207 @@ public class MilkGraph {
    */
   public static BarChart<String, Number> constructMonthlyFarmCollectionReport(FarmCollection fc,
       int year, int month) {
-    ArrayList<Farm> farmList = fc.getFarmCollection();
-    
+    long start = System.nanoTime();
+    BarChart<String, Number> chart =
+        toBarChart(MilkReport.monthlyFarmCollectionReport(fc, year, month));
+    MilkMetrics.MONTHLY_FARM_COLLECTION_REPORT.recordSince(start);
+    return chart;
+  }
+  
+  /**
+   * Constructs a level-of-detail BarChart of the weight of farms, per month, for a given year.
+   * Only the farms ranked from offset to offset + count - 1 get bars of their own; the rest share
+   * an "Other" series, so the chart holds at most 12 * (count + 1) bars however many farms there
+   * are. Drill into the "Other" series by constructing the chart again at offset + count.
+   * @param view the published view of the farms to draw data from
+   * @param year the year to draw data from
+   * @param offset the rank of the first farm to draw, from 0 for the heaviest farm
+   * @param count the largest number of farms to draw individually
+   * @return a BarChart visualizing MilkStats of a year
+   */
+  public static BarChart<String, Number> constructFarmCollectionReport(FarmCollectionView view,
+      int year, int offset, int count) {
+    long start = System.nanoTime();
+    BarChart<String, Number> chart =
+        toBarChart(MilkReport.farmCollectionReport(view, year, offset, count));
+    MilkMetrics.FARM_COLLECTION_REPORT.recordSince(start);
+    return chart;
+  }
+  
+  /**
+   * Constructs a level-of-detail BarChart of the weight of farms, per farm, for a given month.
+   * Only the farms ranked from offset to offset + count - 1 get a bar of their own; the rest share
+   * an "Other" bar.
+   * @param view the published view of the farms to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from
+   * @param offset the rank of the first farm to draw, from 0 for the heaviest farm
+   * @param count the largest number of farms to draw individually
+   * @return a BarChart visualizing MilkStats of a month for the farms
+   */
+  public static BarChart<String, Number> constructMonthlyFarmCollectionReport(
+      FarmCollectionView view, int year, int month, int offset, int count) {
+    long start = System.nanoTime();
+    BarChart<String, Number> chart =
+        toBarChart(MilkReport.monthlyFarmCollectionReport(view, year, month, offset, count));
+    MilkMetrics.MONTHLY_FARM_COLLECTION_REPORT.recordSince(start);
+    return chart;
+  }
+  
+  /**
+   * Constructs a BarChart with one data series per series of a MilkReport.
+   * @param report the report to visualize
+   * @return a BarChart visualizing the report
+   */
+  public static BarChart<String, Number> toBarChart(MilkReport report) {
     CategoryAxis xAxis = new CategoryAxis();
     NumberAxis yAxis = new NumberAxis();
     yAxis.setLabel("Weight");
     
-    BarChart<String, Number> farmCollectionReport = new BarChart<>(xAxis, yAxis);
-    XYChart.Series<String, Number> dataSeries = new XYChart.Series<>();
-    dataSeries.setName(FarmYear.getMonthName(month) + " " + year);
-    for (Farm f : farmList) {
-      FarmYear reportYear = f.findYear(year); 
-      dataSeries.getData().add(new XYChart.Data<String, Number>(f.getFarmId(), 
-            reportYear.sumOfWeightInMonth(month)));
+    BarChart<String, Number> chart = new BarChart<>(xAxis, yAxis);
+    for (int series = 0; series < report.getSeriesCount(); series++) {
+      XYChart.Series<String, Number> dataSeries = new XYChart.Series<>();
+      dataSeries.setName(report.getSeriesName(series));
+      for (int category = 0; category < report.getCategoryCount(); category++) {
+        dataSeries.getData().add(new XYChart.Data<String, Number>(report.getCategory(category),
+            report.getValue(series, category)));
+      }
+      chart.getData().add(dataSeries);
+    }
+    return chart;
+  }
+  
+  /**
+   * Constructs a LineChart visualizing the weight of milk recorded per day at one farm over a run
+   * of years.
+   * @param farm the farm to draw data from
+   * @param fromYear the first year to draw data from
+   * @param toYear the last year to draw data from
+   * @return a LineChart visualizing MilkStats of every day
+   * @throws IllegalArgumentException if toYear is before fromYear
+   * @see #constructDailyReport(DailyReport)
+   */
+  public static LineChart<Number, Number> constructDailyReport(Farm farm, int fromYear,
+      int toYear) {
+    long start = System.nanoTime();
+    LineChart<Number, Number> chart =
+        constructDailyReport(DailyReport.farmReport(farm, fromYear, toYear));
+    MilkMetrics.DAILY_REPORT.recordSince(start);
+    return chart;
+  }
+  
+  /**
+   * Constructs a LineChart visualizing the weight of milk recorded per day at every farm over a
+   * run of years.
+   * @param fc the FarmCollection representing the farms to draw data from
+   * @param fromYear the first year to draw data from
+   * @param toYear the last year to draw data from
+   * @return a LineChart visualizing MilkStats of every day
+   * @throws IllegalArgumentException if toYear is before fromYear
+   * @see #constructDailyReport(DailyReport)
+   */
+  public static LineChart<Number, Number> constructDailyReport(FarmCollection fc, int fromYear,
+      int toYear) {
+    long start = System.nanoTime();
+    LineChart<Number, Number> chart =
+        constructDailyReport(DailyReport.farmCollectionReport(fc, fromYear, toYear));
+    MilkMetrics.DAILY_REPORT.recordSince(start);
+    return chart;
+  }
+  
+  /**
+   * Constructs a LineChart visualizing the weight of milk recorded per day over a run of years.
+   * The chart never holds more points than it is wide in pixels: the days shown are downsampled
+   * to the width of the chart, and downsampled again whenever it is resized or zoomed. Scrolling
+   * over the chart zooms in or out around the day under the mouse, and double-clicking shows
+   * every day again.
+   * @param report the daily report to visualize
+   * @return a LineChart visualizing the report
+   */
+  public static LineChart<Number, Number> constructDailyReport(DailyReport report) {
+    int lastDay = Math.max(1, report.getDayCount() - 1);
+    NumberAxis xAxis = new NumberAxis(0, lastDay, Math.max(1, lastDay / 10));
+    xAxis.setAutoRanging(false);
+    xAxis.setAnimated(false);
+    xAxis.setLabel("Date");
+    xAxis.setTickLabelFormatter(new StringConverter<Number>() {
+      @Override
+      public String toString(Number day) {
+        return report.getDate((int) Math.round(day.doubleValue())).toString();
+      }
+      
+      @Override
+      public Number fromString(String date) {
+        return report.indexOf(LocalDate.parse(date));
+      }
+    });
+    NumberAxis yAxis = new NumberAxis();
+    yAxis.setLabel("Weight");
+    
+    LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+    chart.setAnimated(false);
+    chart.setCreateSymbols(false); // a symbol per point would be a node per point
+    XYChart.Series<Number, Number> series = new XYChart.Series<>();
+    series.setName(report.getName());
+    chart.getData().add(series);
+    
+    ChangeListener<Number> resample = (observable, oldValue, newValue) ->
+        resample(report, series, xAxis);
+    xAxis.lowerBoundProperty().addListener(resample);
+    xAxis.upperBoundProperty().addListener(resample);
+    xAxis.widthProperty().addListener(resample);
+    chart.setOnScroll(scroll -> {
+      double anchor = xAxis.getValueForDisplay(
+          xAxis.sceneToLocal(scroll.getSceneX(), scroll.getSceneY()).getX()).doubleValue();
+      double scale = scroll.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+      zoom(xAxis, anchor, scale, lastDay);
+    });
+    chart.setOnMouseClicked(click -> {
+      if (click.getClickCount() == 2) {
+        zoom(xAxis, 0, Double.POSITIVE_INFINITY, lastDay);
+      }
+    });
+    resample(report, series, xAxis);
+    return chart;
+  }
+  
+  /**
+   * Zooms the date axis of a daily chart around a day, keeping that day at the same place on the
+   * axis. The axis stays within the report and never shows fewer than MIN_ZOOM_DAYS days.
+   * @param xAxis the date axis
+   * @param anchor the day to zoom around
+   * @param scale the share of the days currently shown to show after zooming
+   * @param lastDay the last day of the report
+   */
+  private static void zoom(NumberAxis xAxis, double anchor, double scale, int lastDay) {
+    double lower = xAxis.getLowerBound();
+    double upper = xAxis.getUpperBound();
+    double span = Math.min(lastDay, Math.max(MIN_ZOOM_DAYS, (upper - lower) * scale));
+    double share = upper > lower ? (anchor - lower) / (upper - lower) : 0.5;
+    double newLower = Math.max(0, Math.min(lastDay - span, anchor - share * span));
+    xAxis.setTickUnit(Math.max(1, Math.round(span / 10)));
+    xAxis.setLowerBound(newLower);
+    xAxis.setUpperBound(newLower + span);
+  }
+  
+  /**
+   * Replaces the points of a daily chart with the days shown on its date axis, downsampled to the
+   * axis' width in pixels. The day either side of the axis is kept so the line reaches its edges.
+   * @param report the daily report the chart visualizes
+   * @param series the chart's series
+   * @param xAxis the date axis
+   */
+  private static void resample(DailyReport report, XYChart.Series<Number, Number> series,
+      NumberAxis xAxis) {
+    int from = Math.max(0, (int) Math.floor(xAxis.getLowerBound()));
+    int to = Math.min(report.getDayCount(), (int) Math.ceil(xAxis.getUpperBound()) + 2);
+    int points = xAxis.getWidth() > 0 ? (int) xAxis.getWidth() : DEFAULT_POINTS;
+    int[] days = report.downsample(from, Math.max(from, to), Math.max(3, points));
+    
+    List<XYChart.Data<Number, Number>> data = new ArrayList<>(days.length);
+    for (int day : days) {
+      data.add(new XYChart.Data<Number, Number>(day, report.getValue(day)));
     }
-    farmCollectionReport.getData().add(dataSeries);
-    return farmCollectionReport;
+    series.getData().setAll(data);
   }
 }
@@ -0,0 +1,231 @@
+package application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only journal of MilkStats, kept as a CSV that FarmParser can read. The file stays
+ * open for as long as the journal does, and entries are committed in groups: they are buffered
+ * and then written and forced to disk together, once every batchSize entries or every interval
+ * milliseconds, whichever comes first. Every entry ends with a line break, so entries never run
+ * together.
+ * 
+ * <p>A file the journal creates starts with JOURNAL_HEADER, which marks it as a journal; only in
+ * such a file is a torn last entry cut off. Any other CSV, such as one chosen for output, is only
+ * ever appended to.
+ */
+public class MilkJournal implements Closeable {
+  private static final String HEADER = "date,farm_id,weight\n"; // FarmParser skips the first line
+  private static final String JOURNAL_HEADER = "date,farm_id,weight,journal\n"; // marks a journal
+  private static final int BLOCK_SIZE = 8192; // bytes read at a time when searching for entries
+  private static final int DEFAULT_BATCH_SIZE = 32;
+  private static final long DEFAULT_INTERVAL = 200; // milliseconds
+  private FileChannel channel; // the journal file, opened for appending
+  private ByteArrayOutputStream pending; // entries not yet committed
+  private int pendingCount; // the number of entries in pending
+  private int batchSize; // the number of entries that forces a commit
+  private IOException failure; // an error from a timed commit, reported by the next append
+  private ScheduledExecutorService flusher; // commits pending entries every interval
+  
+  /**
+   * Opens a journal with the default group-commit settings, creating the file if needed.
+   * @param file the journal file
+   * @throws IOException if the file cannot be opened
+   */
+  public MilkJournal(File file) throws IOException {
+    this(file, DEFAULT_BATCH_SIZE, DEFAULT_INTERVAL);
+  }
+  
+  /**
+   * Opens a journal, creating the file if needed. If the file was created as a journal and its
+   * last entry is missing its line break, as left by a crash part way through a write, it is cut
+   * off: replay ignores it anyway, and the next entry then starts on its own line. Any other file
+   * is never cut; if its last line has no line break, one is added before the next entry.
+   * @param file the journal file
+   * @param batchSize the number of entries that forces a commit
+   * @param interval the longest time, in milliseconds, an entry waits to be committed
+   * @throws IOException if the file cannot be opened
+   */
+  public MilkJournal(File file, int batchSize, long interval) throws IOException {
+    this.batchSize = batchSize;
+    this.pending = new ByteArrayOutputStream();
+    boolean created = !Files.exists(file.toPath());
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    
+    if (created || isJournal(channel)) {
+      long end = endOfLastEntry(channel);
+      if (end < channel.size()) {
+        channel.truncate(end);
+        channel.force(false);
+      }
+      if (end == 0) { // new, or torn part way through the header
+        write(JOURNAL_HEADER);
+      }
+    }
+    else if (channel.size() == 0) {
+      write(HEADER);
+    }
+    else if (endOfLastEntry(channel) < channel.size()) { // the last row has no line break
+      write("\n");
+    }
+    channel.position(channel.size());
+    
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "milk-journal");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(this::timedCommit, interval, interval, TimeUnit.MILLISECONDS);
+  }
+  
+  /**
+   * Adds a MilkStat to the journal. It is durable once the group it belongs to is committed.
+   * @param ms the MilkStat to record
+   * @throws IOException if this or an earlier commit failed
+   */
+  public synchronized void append(MilkStat ms) throws IOException {
+    if (failure != null) {
+      IOException e = failure;
+      failure = null;
+      throw e;
+    }
+    String entry = ms.getYear() + "-" + (ms.getMonth() + 1) + "-" + ms.getDay() + "," // as a CSV
+        + ms.getFarmId() + "," + ms.getWeight() + "\n";
+    byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+    pending.write(bytes, 0, bytes.length);
+    pendingCount++;
+    
+    if (pendingCount >= batchSize) {
+      commit();
+    }
+  }
+  
+  /**
+   * Writes every pending entry to the file and forces it to disk.
+   * @throws IOException if the entries cannot be written
+   */
+  public synchronized void commit() throws IOException {
+    if (pendingCount == 0) {
+      return;
+    }
+    ByteBuffer buf = ByteBuffer.wrap(pending.toByteArray());
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+    channel.force(false);
+    pending.reset();
+    pendingCount = 0;
+  }
+  
+  /**
+   * Commits any pending entries and closes the file.
+   * @throws IOException if the entries cannot be written
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    flusher.shutdown();
+    try {
+      commit();
+    }
+    finally {
+      channel.close();
+    }
+  }
+  
+  /**
+   * Adds every complete entry of a journal file to a FarmCollection. In a file created as a
+   * journal, a last entry without its line break, as left by a crash part way through a write, is
+   * ignored; any other file is read to its end.
+   * @param file the journal file
+   * @param fc the FarmCollection to add entries to
+   * @return the number of entries added, or 0 if the file does not exist
+   * @throws IOException if the file cannot be read or holds a malformed entry
+   */
+  public static long replay(File file, FarmCollection fc) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+    try (FileChannel replayChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long end = isJournal(replayChannel) ? endOfLastEntry(replayChannel) : replayChannel.size();
+      return FarmParser.parseMapped(replayChannel, 0, end, true, new FarmDictionary(),
+          fc::addMilkWeight);
+    }
+  }
+  
+  /**
+   * Commits pending entries on the flusher thread, keeping any error for the next append.
+   */
+  private synchronized void timedCommit() {
+    try {
+      commit();
+    }
+    catch (IOException e) {
+      failure = e;
+    }
+  }
+  
+  /**
+   * Writes text straight to the end of the file, bypassing the pending entries.
+   * @param text the text to write
+   * @throws IOException if the text cannot be written
+   */
+  private void write(String text) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    while (buf.hasRemaining()) {
+      channel.write(buf, channel.size());
+    }
+    channel.force(false);
+  }
+  
+  /**
+   * Returns whether a file was created as a journal, which is when it starts with JOURNAL_HEADER.
+   * @param channel the file to check
+   * @return whether the file is a journal
+   * @throws IOException if the file cannot be read
+   */
+  private static boolean isJournal(FileChannel channel) throws IOException {
+    byte[] header = JOURNAL_HEADER.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buf = ByteBuffer.allocate(header.length);
+    while (buf.hasRemaining() && channel.read(buf, buf.position()) > 0) {
+      continue; // read until the buffer is full or the file ends
+    }
+    return !buf.hasRemaining() && ByteBuffer.wrap(header).equals(buf.flip());
+  }
+  
+  /**
+   * Finds the end of the last complete entry of a file, which is just past its last line break.
+   * In a journal, anything after it is a torn entry. The file is read backwards a block at a time.
+   * @param channel the file to search
+   * @return the offset just past the last line break, or 0 if there is none
+   * @throws IOException if the file cannot be read
+   */
+  private static long endOfLastEntry(FileChannel channel) throws IOException {
+    ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    long end = channel.size();
+    while (end > 0) { // back up one block at a time to the end of the last complete entry
+      long start = Math.max(0, end - BLOCK_SIZE);
+      block.clear().limit((int) (end - start));
+      while (block.hasRemaining() && channel.read(block, start + block.position()) > 0) {
+        continue; // read the whole block
+      }
+      for (int i = block.position() - 1; i >= 0; i--) {
+        if (block.get(i) == '\n') {
+          return start + i + 1;
+        }
+      }
+      end = start;
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,222 @@
+package application;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts where the time goes while ingesting and reporting: rows and bytes parsed, parse errors,
+ * the latency of loading each file and of building each kind of report, and the size of the
+ * watched FarmCollection. Counters are LongAdders and latencies LatencyHistograms, recorded once
+ * per parsed range, file or report rather than per row, so they are cheap enough to leave on.
+ * 
+ * <p>Once start() has been called, the metrics are published as MBeans in the "application" JMX
+ * domain and summarised in a log line every LOG_PERIOD_SECONDS seconds.
+ */
+public class MilkMetrics implements MilkMetricsMBean {
+  public static final long LOG_PERIOD_SECONDS = 60;
+  public static final LatencyHistogram FILE_INGEST = new LatencyHistogram("file ingest");
+  public static final LatencyHistogram FARM_REPORT = new LatencyHistogram("farm report");
+  public static final LatencyHistogram MONTHLY_FARM_REPORT =
+      new LatencyHistogram("monthly farm report");
+  public static final LatencyHistogram FARM_COLLECTION_REPORT =
+      new LatencyHistogram("farm collection report");
+  public static final LatencyHistogram MONTHLY_FARM_COLLECTION_REPORT =
+      new LatencyHistogram("monthly farm collection report");
+  public static final LatencyHistogram DAILY_REPORT = new LatencyHistogram("daily report");
+  private static final LatencyHistogram[] LATENCIES = {FILE_INGEST, FARM_REPORT,
+      MONTHLY_FARM_REPORT, FARM_COLLECTION_REPORT, MONTHLY_FARM_COLLECTION_REPORT, DAILY_REPORT};
+  private static final Logger LOG = Logger.getLogger(MilkMetrics.class.getName());
+  private static final LongAdder rowsParsed = new LongAdder();
+  private static final LongAdder bytesRead = new LongAdder();
+  private static final LongAdder parseErrors = new LongAdder();
+  private static MilkMetrics instance; // the registered MBean, once started
+  private static ScheduledExecutorService logger; // writes the periodic log line, once started
+  private final FarmCollection fc; // the FarmCollection whose published views are sized
+  private volatile double rowsPerSecond; // the parse rate over the last logging period
+  private volatile double bytesPerSecond;
+  private long lastRows; // the rows parsed when the last logging period ended
+  private long lastBytes;
+  private long lastNanos; // when the last logging period ended
+  
+  /**
+   * Constructs the MBean watching a FarmCollection.
+   * @param fc the FarmCollection to size
+   */
+  private MilkMetrics(FarmCollection fc) {
+    this.fc = fc;
+    lastRows = rowsParsed.sum();
+    lastBytes = bytesRead.sum();
+    lastNanos = System.nanoTime();
+  }
+  
+  /**
+   * Publishes the metrics as MBeans and starts writing the periodic log line. Does nothing if the
+   * metrics have already been started. If the MBeans cannot be registered a warning is logged and
+   * the log line is still written.
+   * @param fc the FarmCollection whose farms and rows are counted, read only through its
+   *    published views
+   */
+  public static synchronized void start(FarmCollection fc) {
+    if (instance != null) {
+      return;
+    }
+    instance = new MilkMetrics(fc);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      server.registerMBean(instance, new ObjectName("application:type=MilkMetrics"));
+      for (LatencyHistogram latency : LATENCIES) {
+        server.registerMBean(latency, new ObjectName("application:type=Latency,name="
+            + ObjectName.quote(latency.getName())));
+      }
+    }
+    catch (JMException e) {
+      LOG.log(Level.WARNING, "Metrics could not be published over JMX.", e);
+    }
+    
+    logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "milk-metrics");
+      thread.setDaemon(true); // never keep the application open
+      return thread;
+    });
+    MilkMetrics metrics = instance;
+    logger.scheduleAtFixedRate(() -> LOG.info(metrics.sample()), LOG_PERIOD_SECONDS,
+        LOG_PERIOD_SECONDS, TimeUnit.SECONDS);
+  }
+  
+  /**
+   * Stops writing the periodic log line. The MBeans stay registered.
+   */
+  public static synchronized void stop() {
+    if (logger != null) {
+      logger.shutdown();
+    }
+  }
+  
+  /**
+   * Records a range of a CSV that has been parsed.
+   * @param rows the number of rows parsed
+   * @param bytes the number of bytes the rows took up
+   */
+  static void recordParse(long rows, long bytes) {
+    rowsParsed.add(rows);
+    bytesRead.add(bytes);
+  }
+  
+  /**
+   * Records a row that could not be parsed.
+   */
+  static void recordParseError() {
+    parseErrors.increment();
+  }
+  
+  /**
+   * Ends a logging period, working out the parse rates over it.
+   * @return the log line summarising every metric
+   */
+  private synchronized String sample() {
+    long now = System.nanoTime();
+    long rows = rowsParsed.sum();
+    long bytes = bytesRead.sum();
+    double seconds = Math.max(1, now - lastNanos) / 1e9;
+    rowsPerSecond = (rows - lastRows) / seconds;
+    bytesPerSecond = (bytes - lastBytes) / seconds;
+    lastRows = rows;
+    lastBytes = bytes;
+    lastNanos = now;
+    
+    StringBuilder line = new StringBuilder(String.format(
+        "rows=%d (%.0f/s) bytes=%d (%.0f/s) errors=%d farms=%d held=%d heap/row=%dB", rows,
+        rowsPerSecond, bytes, bytesPerSecond, parseErrors.sum(), getFarmCount(), getRowCount(),
+        getHeapBytesPerRow()));
+    for (LatencyHistogram latency : LATENCIES) {
+      if (latency.getCount() > 0) {
+        line.append("; ").append(latency);
+      }
+    }
+    return line.toString();
+  }
+  
+  /**
+   * Returns the number of rows parsed from CSVs since the application started.
+   * @return the number of rows
+   */
+  @Override
+  public long getRowsParsed() {
+    return rowsParsed.sum();
+  }
+  
+  /**
+   * Returns the number of bytes of CSV parsed since the application started.
+   * @return the number of bytes
+   */
+  @Override
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+  
+  /**
+   * Returns the rate rows were parsed at over the last logging period.
+   * @return the rows parsed per second
+   */
+  @Override
+  public double getRowsPerSecond() {
+    return rowsPerSecond;
+  }
+  
+  /**
+   * Returns the rate bytes were parsed at over the last logging period.
+   * @return the bytes parsed per second
+   */
+  @Override
+  public double getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+  
+  /**
+   * Returns the number of rows that could not be parsed since the application started.
+   * @return the number of parse errors
+   */
+  @Override
+  public long getParseErrors() {
+    return parseErrors.sum();
+  }
+  
+  /**
+   * Returns the number of farms in the watched FarmCollection's latest published view.
+   * @return the number of farms
+   */
+  @Override
+  public int getFarmCount() {
+    return fc.getView().getFarmCount();
+  }
+  
+  /**
+   * Returns the number of rows held in the watched FarmCollection's latest published view.
+   * @return the number of rows
+   */
+  @Override
+  public long getRowCount() {
+    return fc.getView().getRowCount();
+  }
+  
+  /**
+   * Returns an estimate of the heap each row held takes up.
+   * @return the estimated heap bytes per row, or 0 if no rows are held
+   */
+  @Override
+  public long getHeapBytesPerRow() {
+    long rows = getRowCount();
+    if (rows == 0) {
+      return 0;
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / rows;
+  }
+}
@@ -0,0 +1,57 @@
+package application;
+
+/**
+ * The attributes of MilkMetrics published over JMX.
+ */
+public interface MilkMetricsMBean {
+  
+  /**
+   * Returns the number of rows parsed from CSVs since the application started.
+   * @return the number of rows
+   */
+  long getRowsParsed();
+  
+  /**
+   * Returns the number of bytes of CSV parsed since the application started.
+   * @return the number of bytes
+   */
+  long getBytesRead();
+  
+  /**
+   * Returns the rate rows were parsed at over the last logging period.
+   * @return the rows parsed per second
+   */
+  double getRowsPerSecond();
+  
+  /**
+   * Returns the rate bytes were parsed at over the last logging period.
+   * @return the bytes parsed per second
+   */
+  double getBytesPerSecond();
+  
+  /**
+   * Returns the number of rows that could not be parsed since the application started.
+   * @return the number of parse errors
+   */
+  long getParseErrors();
+  
+  /**
+   * Returns the number of farms in the watched FarmCollection's latest published view.
+   * @return the number of farms
+   */
+  int getFarmCount();
+  
+  /**
+   * Returns the number of rows held in the watched FarmCollection's latest published view.
+   * @return the number of rows
+   */
+  long getRowCount();
+  
+  /**
+   * Returns an estimate of the heap each row held takes up: the heap in use divided by the number
+   * of rows. The estimate is high while few rows are held, and includes garbage not yet
+   * collected.
+   * @return the estimated heap bytes per row, or 0 if no rows are held
+   */
+  long getHeapBytesPerRow();
+}
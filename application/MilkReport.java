@@ -0,0 +1,445 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The data behind one of the Milk Weights reports: a set of named series, each holding one value
+ * per category. Building a report needs no JavaFX; MilkGraph turns a MilkReport into a BarChart
+ * for the GUI.
+ */
+public class MilkReport {
+  private String[] seriesNames; // the name of each series
+  private String[] categories; // the name of each category
+  private long[][] values; // the value of each category, by series
+  private int otherFarmCount; // the number of farms rolled into an "Other" series or category
+  
+  /**
+   * Constructs a new MilkReport with every value set to 0.
+   * @param seriesNames the name of each series
+   * @param categories the name of each category
+   */
+  public MilkReport(String[] seriesNames, String[] categories) {
+    this.seriesNames = seriesNames;
+    this.categories = categories;
+    this.values = new long[seriesNames.length][categories.length];
+  }
+  
+  /**
+   * Builds a report of the weight of one farm, per month, for a given year.
+   * @param farm the farm to draw data from
+   * @param year the year to draw data from
+   * @return a report with one series and a category per month
+   */
+  public static MilkReport farmReport(Farm farm, int year) {
+    MilkReport report = new MilkReport(new String[] {farm.getFarmId()}, monthNames());
+    FarmYear reportYear = farm.findYear(year);
+    if (reportYear != null) { // a farm with no data for the year reports 0 for every month
+      for (int month = 0; month < 12; month++) {
+        report.setValue(0, month, reportYear.sumOfWeightInMonth(month));
+      }
+    }
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of one farm for a given year and month.
+   * @param farm the farm to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from
+   * @return a report with one series and one category
+   */
+  public static MilkReport monthlyFarmReport(Farm farm, int year, int month) {
+    MilkReport report = new MilkReport(new String[] {farm.getFarmId()},
+        new String[] {FarmYear.getMonthName(month)});
+    FarmYear reportYear = farm.findYear(year);
+    if (reportYear != null) {
+      report.setValue(0, 0, reportYear.sumOfWeightInMonth(month));
+    }
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of every farm, per month, for a given year. The totals are read
+   * from the FarmCollection's aggregate cube, where the year is one contiguous run of months.
+   * @param fc the FarmCollection representing the farms to draw data from
+   * @param year the year to draw data from
+   * @return a report with a series per farm and a category per month
+   */
+  public static MilkReport farmCollectionReport(FarmCollection fc, int year) {
+    MilkReport report = new MilkReport(farmIds(fc), monthNames());
+    AggregateCube cube = fc.getAggregateCube();
+    for (int series = 0; series < report.getSeriesCount(); series++) {
+      cube.copyMonths(series, year, report.values[series]);
+    }
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of every farm for a given year and month, read from the
+   * FarmCollection's aggregate cube.
+   * @param fc the FarmCollection representing the farms to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from
+   * @return a report with one series and a category per farm
+   */
+  public static MilkReport monthlyFarmCollectionReport(FarmCollection fc, int year, int month) {
+    MilkReport report = new MilkReport(new String[] {FarmYear.getMonthName(month) + " " + year},
+        farmIds(fc));
+    AggregateCube cube = fc.getAggregateCube();
+    for (int category = 0; category < report.getCategoryCount(); category++) {
+      report.setValue(0, category, cube.get(category, year, month));
+    }
+    return report;
+  }
+  
+  /**
+   * Returns the number of series in this report.
+   * @return the number of series
+   */
+  public int getSeriesCount() {
+    return seriesNames.length;
+  }
+  
+  /**
+   * Returns the name of a series.
+   * @param series the index of the series
+   * @return the name of the series
+   */
+  public String getSeriesName(int series) {
+    return seriesNames[series];
+  }
+  
+  /**
+   * Returns the number of categories in this report.
+   * @return the number of categories
+   */
+  public int getCategoryCount() {
+    return categories.length;
+  }
+  
+  /**
+   * Returns the name of a category.
+   * @param category the index of the category
+   * @return the name of the category
+   */
+  public String getCategory(int category) {
+    return categories[category];
+  }
+  
+  /**
+   * Returns the value of a category in a series.
+   * @param series the index of the series
+   * @param category the index of the category
+   * @return the value
+   */
+  public long getValue(int series, int category) {
+    return values[series][category];
+  }
+  
+  /**
+   * Sets the value of a category in a series.
+   * @param series the index of the series
+   * @param category the index of the category
+   * @param value the new value
+   */
+  public void setValue(int series, int category, long value) {
+    values[series][category] = value;
+  }
+  
+  /**
+   * Builds a report of the weight of one farm, per month, for a given year, from a published view.
+   * @param view the view to draw data from
+   * @param index the position of the farm in the view
+   * @param year the year to draw data from
+   * @return a report with one series and a category per month
+   */
+  public static MilkReport farmReport(FarmCollectionView view, int index, int year) {
+    MilkReport report = new MilkReport(new String[] {view.getFarmId(index)}, monthNames());
+    view.copyMonths(index, year, report.values[0]);
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of one farm for a given year and month, from a published view.
+   * @param view the view to draw data from
+   * @param index the position of the farm in the view
+   * @param year the year to draw data from
+   * @param month the month to draw data from
+   * @return a report with one series and one category
+   */
+  public static MilkReport monthlyFarmReport(FarmCollectionView view, int index, int year,
+      int month) {
+    MilkReport report = new MilkReport(new String[] {view.getFarmId(index)},
+        new String[] {FarmYear.getMonthName(month)});
+    report.setValue(0, 0, view.getWeight(index, year, month));
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of every farm, per month, for a given year, from a published
+   * view.
+   * @param view the view to draw data from
+   * @param year the year to draw data from
+   * @return a report with a series per farm and a category per month
+   */
+  public static MilkReport farmCollectionReport(FarmCollectionView view, int year) {
+    MilkReport report = new MilkReport(farmIds(view), monthNames());
+    for (int series = 0; series < report.getSeriesCount(); series++) {
+      view.copyMonths(series, year, report.values[series]);
+    }
+    return report;
+  }
+  
+  /**
+   * Builds a report of the weight of every farm for a given year and month, from a published
+   * view.
+   * @param view the view to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from
+   * @return a report with one series and a category per farm
+   */
+  public static MilkReport monthlyFarmCollectionReport(FarmCollectionView view, int year,
+      int month) {
+    MilkReport report = new MilkReport(new String[] {FarmYear.getMonthName(month) + " " + year},
+        farmIds(view));
+    for (int category = 0; category < report.getCategoryCount(); category++) {
+      report.setValue(0, category, view.getWeight(category, year, month));
+    }
+    return report;
+  }
+  
+  /**
+   * Builds a level-of-detail report of the weight of farms, per month, for a given year, from a
+   * published view. Farms are ranked by their weight over the year; only the farms ranked from
+   * offset to offset + count - 1 get a series of their own, and every farm ranked below them is
+   * rolled into a final "Other" series. Farms ranked above offset are left out, so drilling into
+   * the "Other" series of one report is the report at offset + count. The report never holds more
+   * than count + 1 series, however many farms the view holds.
+   * @param view the view to draw data from
+   * @param year the year to draw data from
+   * @param offset the rank of the first farm to report, from 0 for the heaviest farm
+   * @param count the largest number of farms to report individually
+   * @return a report with a series per reported farm, an "Other" series if any farms remain, and a
+   *    category per month
+   * @throws IllegalArgumentException if offset is negative or count is less than 1
+   */
+  public static MilkReport farmCollectionReport(FarmCollectionView view, int year, int offset,
+      int count) {
+    checkLevelOfDetail(offset, count);
+    long[] months = new long[12];
+    long[] remainder = new long[12]; // every farm ranked from offset down
+    FarmRanking ranking = FarmRanking.rank(view.getFarmCount(), view::getFarmId, offset + count,
+        index -> {
+          view.copyMonths(index, year, months);
+          long weight = 0;
+          for (int month = 0; month < 12; month++) {
+            weight += months[month];
+            remainder[month] += months[month];
+          }
+          return weight;
+        });
+    for (int rank = 0; rank < Math.min(offset, ranking.size()); rank++) {
+      subtractMonths(view, ranking.getFarmIndex(rank), year, months, remainder);
+    }
+    
+    int shown = Math.max(0, ranking.size() - offset);
+    int others = Math.max(0, view.getFarmCount() - offset - shown);
+    MilkReport report = new MilkReport(levelOfDetailNames(ranking, offset, shown, others),
+        monthNames());
+    for (int series = 0; series < shown; series++) {
+      int index = ranking.getFarmIndex(offset + series);
+      view.copyMonths(index, year, report.values[series]);
+      subtractMonths(view, index, year, months, remainder);
+    }
+    if (others > 0) {
+      report.values[shown] = remainder;
+      report.otherFarmCount = others;
+    }
+    return report;
+  }
+  
+  /**
+   * Builds a level-of-detail report of the weight of farms for a given year and month, from a
+   * published view. Farms are ranked by their weight over the month; only the farms ranked from
+   * offset to offset + count - 1 get a category of their own, and every farm ranked below them is
+   * rolled into a final "Other" category.
+   * @param view the view to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from
+   * @param offset the rank of the first farm to report, from 0 for the heaviest farm
+   * @param count the largest number of farms to report individually
+   * @return a report with one series, a category per reported farm and an "Other" category if any
+   *    farms remain
+   * @throws IllegalArgumentException if offset is negative or count is less than 1
+   * @see #farmCollectionReport(FarmCollectionView, int, int, int)
+   */
+  public static MilkReport monthlyFarmCollectionReport(FarmCollectionView view, int year,
+      int month, int offset, int count) {
+    checkLevelOfDetail(offset, count);
+    FarmRanking ranking = FarmRanking.rank(view.getFarmCount(), view::getFarmId, offset + count,
+        index -> view.getWeight(index, year, month));
+    long remainder = ranking.getTotal();
+    for (int rank = 0; rank < Math.min(offset, ranking.size()); rank++) {
+      remainder -= ranking.getWeight(rank);
+    }
+    
+    int shown = Math.max(0, ranking.size() - offset);
+    int others = Math.max(0, view.getFarmCount() - offset - shown);
+    MilkReport report = new MilkReport(new String[] {FarmYear.getMonthName(month) + " " + year},
+        levelOfDetailNames(ranking, offset, shown, others));
+    for (int category = 0; category < shown; category++) {
+      long weight = ranking.getWeight(offset + category);
+      report.setValue(0, category, weight);
+      remainder -= weight;
+    }
+    if (others > 0) {
+      report.setValue(0, shown, remainder);
+      report.otherFarmCount = others;
+    }
+    return report;
+  }
+  
+  /**
+   * Returns the number of farms rolled into this report's "Other" series or category, which is
+   * always the last one. Only level-of-detail reports have one.
+   * @return the number of farms in the "Other" group, or 0 if the report has no such group
+   */
+  public int getOtherFarmCount() {
+    return otherFarmCount;
+  }
+  
+  /**
+   * Checks the range of ranks asked of a level-of-detail report.
+   * @param offset the rank of the first farm to report
+   * @param count the largest number of farms to report individually
+   * @throws IllegalArgumentException if offset is negative or count is less than 1
+   */
+  private static void checkLevelOfDetail(int offset, int count) {
+    if (offset < 0 || count < 1) {
+      throw new IllegalArgumentException("Offset must not be negative and count must be at least"
+          + " 1.");
+    }
+  }
+  
+  /**
+   * Returns the names of the farms a level-of-detail report shows, followed by a name for the
+   * "Other" group if there is one.
+   * @param ranking the ranked farms
+   * @param offset the rank of the first farm shown
+   * @param shown the number of farms shown
+   * @param others the number of farms in the "Other" group
+   * @return the names
+   */
+  private static String[] levelOfDetailNames(FarmRanking ranking, int offset, int shown,
+      int others) {
+    String[] names = new String[shown + (others > 0 ? 1 : 0)];
+    for (int i = 0; i < shown; i++) {
+      names[i] = ranking.getFarmId(offset + i);
+    }
+    if (others > 0) {
+      names[shown] = "Other (" + others + (others == 1 ? " farm)" : " farms)");
+    }
+    return names;
+  }
+  
+  /**
+   * Takes one farm's weight per month for a year away from running monthly totals.
+   * @param view the view to draw data from
+   * @param index the position of the farm in the view
+   * @param year the year to draw data from
+   * @param months scratch space for the farm's months
+   * @param totals the monthly totals to subtract from
+   */
+  private static void subtractMonths(FarmCollectionView view, int index, int year, long[] months,
+      long[] totals) {
+    view.copyMonths(index, year, months);
+    for (int month = 0; month < 12; month++) {
+      totals[month] -= months[month];
+    }
+  }
+  
+  /**
+   * Joins reports sharing the same categories into one report holding the series of each, in
+   * order.
+   * @param parts the reports to join; there must be at least one
+   * @return the joined report
+   */
+  static MilkReport joinSeries(List<MilkReport> parts) {
+    List<String> names = new ArrayList<String>();
+    for (MilkReport part : parts) {
+      names.addAll(Arrays.asList(part.seriesNames));
+    }
+    MilkReport report = new MilkReport(names.toArray(new String[0]), parts.get(0).categories);
+    int series = 0;
+    for (MilkReport part : parts) {
+      for (long[] partValues : part.values) {
+        report.values[series++] = partValues;
+      }
+    }
+    return report;
+  }
+  
+  /**
+   * Joins reports sharing the same series into one report holding the categories of each, in
+   * order.
+   * @param parts the reports to join; there must be at least one
+   * @return the joined report
+   */
+  static MilkReport joinCategories(List<MilkReport> parts) {
+    List<String> names = new ArrayList<String>();
+    for (MilkReport part : parts) {
+      names.addAll(Arrays.asList(part.categories));
+    }
+    MilkReport report = new MilkReport(parts.get(0).seriesNames, names.toArray(new String[0]));
+    int category = 0;
+    for (MilkReport part : parts) {
+      for (int series = 0; series < report.values.length; series++) {
+        System.arraycopy(part.values[series], 0, report.values[series], category,
+            part.categories.length);
+      }
+      category += part.categories.length;
+    }
+    return report;
+  }
+  
+  /**
+   * Returns the name of every month, for use as categories.
+   * @return the names of the months from January to December
+   */
+  private static String[] monthNames() {
+    String[] names = new String[12];
+    for (int month = 0; month < 12; month++) {
+      names[month] = FarmYear.getMonthName(month);
+    }
+    return names;
+  }
+  
+  /**
+   * Returns the ID of every farm in a FarmCollection, in order.
+   * @param fc the FarmCollection to list
+   * @return the farm IDs
+   */
+  private static String[] farmIds(FarmCollection fc) {
+    String[] ids = new String[fc.getFarmCollection().size()];
+    int i = 0;
+    for (Farm f : fc.getFarmCollection()) {
+      ids[i++] = f.getFarmId();
+    }
+    return ids;
+  }
+  
+  /**
+   * Returns the ID of every farm in a published view, in order.
+   * @param view the view to list
+   * @return the farm IDs
+   */
+  private static String[] farmIds(FarmCollectionView view) {
+    String[] ids = new String[view.getFarmCount()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = view.getFarmId(i);
+    }
+    return ids;
+  }
+}
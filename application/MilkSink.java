@@ -0,0 +1,18 @@
+package application;
+
+/**
+ * Receives milk weights one at a time as primitives, without a MilkStat being built for each.
+ * Used by FarmParser's memory-mapped mode to hand rows to their destination.
+ */
+public interface MilkSink {
+  
+  /**
+   * Accepts one milk weight.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param farmId the name of the farm the weight belongs to
+   * @param weight the weight of milk recorded
+   */
+  void accept(int year, int month, int day, String farmId, int weight);
+}
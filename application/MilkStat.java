@@ -1,6 +1,9 @@
 package application;
 
+import java.time.LocalDate;
+import java.time.Year;
 import java.util.Calendar;
+import java.util.GregorianCalendar;
 
 /**
  * A class representing a weight of milk produced by a specified farm, on a specified day. 
@@ -8,8 +11,12 @@ import java.util.Calendar;
  * @author Sean
  */
 public class MilkStat {
-  private Calendar date; // the date this weight was recorded on
-  private String dateString; // used for cell factory in GUI
+  private static final int YEAR_SHIFT = 9; // bits below the year in a packed date
+  private static final int MONTH_SHIFT = 5; // bits below the month in a packed date
+  private static final int MONTH_MASK = 0xF; // the month bits, once shifted down
+  private static final int DAY_MASK = 0x1F; // the day bits
+  private static final int[] MONTH_LENGTHS = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+  private int date; // the date this weight was recorded on, packed as year|month|day bits
   private String farmId; // the name of the farm this weight belongs to
   private int weight; // the weight itself
   
@@ -20,11 +27,93 @@ public class MilkStat {
    * @param weight the weight of milk recorded
    */
   public MilkStat(Calendar date, String farmId, int weight) {
-    this.date = date;
+    this(date.get(Calendar.YEAR), date.get(Calendar.MONTH), date.get(Calendar.DAY_OF_MONTH),
+        farmId, weight);
+  }
+  
+  /**
+   * Construct a new instance of MilkStat from the parts of its date.
+   * @param year the year this stat was recorded in
+   * @param month the month this stat was recorded in, from 0-11
+   * @param day the day of the month this stat was recorded on
+   * @param farmId the name of the farm this stat belongs to
+   * @param weight the weight of milk recorded
+   * @throws IllegalArgumentException if the date does not exist
+   */
+  public MilkStat(int year, int month, int day, String farmId, int weight) {
+    this.date = packDate(year, month, day);
     this.farmId = farmId;
     this.weight = weight;
   }
   
+  /**
+   * Packs the parts of a date into a single int, so that each part can be read back with yearOf,
+   * monthOf and dayOf. Packed dates compare in the same order as the dates they represent.
+   * @param year the year of the date
+   * @param month the month of the date, from 0-11
+   * @param day the day of the month of the date
+   * @return the packed date
+   * @throws IllegalArgumentException if the date does not exist
+   */
+  public static int packDate(int year, int month, int day) {
+    if (!isValidDate(year, month, day)) {
+      throw new IllegalArgumentException("Invalid date: " + year + "/" + month + "/" + day);
+    }
+    return (year << YEAR_SHIFT) | (month << MONTH_SHIFT) | day;
+  }
+  
+  /**
+   * Returns the year of a packed date.
+   * @param date a date packed by packDate
+   * @return the year of the date
+   */
+  public static int yearOf(int date) {
+    return date >> YEAR_SHIFT;
+  }
+  
+  /**
+   * Returns the month of a packed date.
+   * @param date a date packed by packDate
+   * @return the month of the date, from 0-11
+   */
+  public static int monthOf(int date) {
+    return (date >> MONTH_SHIFT) & MONTH_MASK;
+  }
+  
+  /**
+   * Returns the day of the month of a packed date.
+   * @param date a date packed by packDate
+   * @return the day of the date
+   */
+  public static int dayOf(int date) {
+    return date & DAY_MASK;
+  }
+  
+  /**
+   * Returns a String representing a packed date, in the same format as getDateString: the month
+   * is counted from 0, as in Calendar.
+   * @param date a date packed by packDate
+   * @return a String representing the date
+   */
+  public static String toDateString(int date) {
+    return yearOf(date) + "-" + monthOf(date) + "-" + dayOf(date);
+  }
+  
+  /**
+   * Returns whether a date exists: the month is from 0-11 and the day is within the length of
+   * the month, counting February 29th only in leap years.
+   * @param year the year of the date
+   * @param month the month of the date, from 0-11
+   * @param day the day of the month of the date
+   * @return whether the date exists
+   */
+  public static boolean isValidDate(int year, int month, int day) {
+    if (month < 0 || month > 11 || day < 1 || day > MONTH_LENGTHS[month]) {
+      return false;
+    }
+    return month != 1 || day != 29 || Year.isLeap(year);
+  }
+  
   /**
    * Returns a String representation of this MilkStat.
    * @return a String representation of this MilkStat
@@ -32,28 +121,46 @@ public class MilkStat {
   @Override
   public String toString() {
     String milkStr = "";
-    milkStr += date.get(Calendar.YEAR) + "/";
-    milkStr += date.get(Calendar.MONTH) + "/";
-    milkStr += date.get(Calendar.DAY_OF_MONTH) + ", ";
+    milkStr += getYear() + "/";
+    milkStr += getMonth() + "/";
+    milkStr += getDay() + ", ";
     milkStr += farmId + ", ";
     milkStr += weight;
     return milkStr;
   }
   
   /**
-   * Returns the date this MilkStat represents.
+   * Returns the date this MilkStat represents. The Calendar is built on every call, so changing
+   * it does not change this MilkStat.
    * @return the date
    */
   public Calendar getDate() {
+    return new GregorianCalendar(getYear(), getMonth(), getDay());
+  }
+  
+  /**
+   * Returns the date this MilkStat represents as a LocalDate.
+   * @return the date
+   */
+  public LocalDate getLocalDate() {
+    return LocalDate.of(getYear(), getMonth() + 1, getDay());
+  }
+  
+  /**
+   * Returns the date this MilkStat represents, packed as by packDate.
+   * @return the packed date
+   */
+  public int getPackedDate() {
     return date;
   }
   
   /**
-   * Returns a String representing the date of this MilkStat.
+   * Returns a String representing the date of this MilkStat. The String is built on every call
+   * rather than kept, so it costs no memory per MilkStat.
    * @return a String representing date
    */
   public String getDateString() {
-    return getYear() + "-" + getMonth() + "-" + getDay();
+    return toDateString(date);
   }
   
   /**
@@ -61,7 +168,7 @@ public class MilkStat {
    * @return the year of the date
    */
   public int getYear() {
-    return date.get(Calendar.YEAR);
+    return yearOf(date);
   }
   
   /**
@@ -69,7 +176,7 @@ public class MilkStat {
    * @return the month of the date
    */
   public int getMonth() {
-    return date.get(Calendar.MONTH);
+    return monthOf(date);
   }
   
   /**
@@ -77,7 +184,7 @@ public class MilkStat {
    * @return the day of the date
    */
   public int getDay() {
-    return date.get(Calendar.DAY_OF_MONTH);
+    return dayOf(date);
   }
   
   /**
@@ -85,7 +192,8 @@ public class MilkStat {
    * @param date the new date
    */
   public void setDate(Calendar date) {
-    this.date = date;
+    this.date = packDate(date.get(Calendar.YEAR), date.get(Calendar.MONTH),
+        date.get(Calendar.DAY_OF_MONTH));
   }
   
   /**
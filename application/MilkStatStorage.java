@@ -0,0 +1,91 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the weights of a FarmYear as MilkStat objects, in one list per month, in the order they
+ * were added.
+ */
+class MilkStatStorage implements YearStorage {
+  private List<ArrayList<MilkStat>> months; // the MilkStats of each month
+  
+  /**
+   * Constructs a new empty MilkStatStorage.
+   */
+  MilkStatStorage() {
+    months = new ArrayList<ArrayList<MilkStat>>();
+    for (int month = 0; month < 12; month++) {
+      months.add(new ArrayList<MilkStat>());
+    }
+  }
+  
+  /**
+   * Stores a weight as a new MilkStat.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @param farmId the name of the farm the weight belongs to
+   */
+  @Override
+  public void add(int year, int month, int day, int weight, String farmId) {
+    add(new MilkStat(year, month, day, farmId, weight));
+  }
+  
+  /**
+   * Stores a MilkStat as it is.
+   * @param ms the MilkStat to store
+   */
+  @Override
+  public void add(MilkStat ms) {
+    months.get(ms.getMonth()).add(ms);
+  }
+  
+  /**
+   * Returns the day of the month of the MilkStat at a position.
+   * @param month the month of the MilkStat, from 0-11
+   * @param position the position of the MilkStat within the month
+   * @return the day of the month
+   */
+  @Override
+  public int dayAt(int month, int position) {
+    return months.get(month).get(position).getDay();
+  }
+  
+  /**
+   * Returns the weight of the MilkStat at a position.
+   * @param month the month of the MilkStat, from 0-11
+   * @param position the position of the MilkStat within the month
+   * @return the weight
+   */
+  @Override
+  public int weightAt(int month, int position) {
+    return months.get(month).get(position).getWeight();
+  }
+  
+  /**
+   * Returns the MilkStat at a position.
+   * @param month the month of the MilkStat, from 0-11
+   * @param position the position of the MilkStat within the month
+   * @return the MilkStat
+   */
+  @Override
+  public MilkStat milkStatAt(int month, int position) {
+    return months.get(month).get(position);
+  }
+  
+  /**
+   * Returns the list of MilkStats of a month itself.
+   * @param year the year this storage belongs to
+   * @param month the month to list, from 0-11
+   * @param farmId the name of the farm this storage belongs to
+   * @param positions the position of every MilkStat of the month
+   * @return the MilkStats of the month
+   */
+  @Override
+  public ArrayList<MilkStat> milkStatsInMonth(int year, int month, String farmId,
+      int[] positions) {
+    return months.get(month);
+  }
+}
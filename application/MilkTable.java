@@ -0,0 +1,334 @@
+package application;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rows behind the data grid: every weight held by a FarmCollection, read straight from the
+ * storage of its FarmYears. The table keeps only a reference to where each row is stored, packing
+ * its farm, date and position into one long, and an array of row numbers giving the order they
+ * are shown in. Sorting and filtering work on those primitives; a row's weight is read from its
+ * FarmYear only when the row scrolls into view or the rows are sorted by weight, and no MilkStat
+ * is built for any row. Building a table needs no JavaFX; the GUI's TableView asks for the rows
+ * through rows(), which creates nothing until a row scrolls into view.
+ *
+ * <p>A MilkTable lists the rows held when it was built, so rows added afterwards are not shown
+ * until a new one is built. A weight changed since is shown as it is now, and a day removed since
+ * shows a weight of 0. Like the FarmCollection it reads, a MilkTable may only be used on the
+ * thread that changes the FarmCollection.
+ */
+public class MilkTable {
+  public static final int FARM = 0; // sorts by farm ID
+  public static final int DATE = 1; // sorts by date
+  public static final int WEIGHT = 2; // sorts by weight
+  private static final int POSITION_BITS = 19; // bits of a row for its position in its month
+  private static final int DATE_BITS = 24; // bits of a row for its date, packed by MilkStat
+  private static final int FARM_SHIFT = POSITION_BITS + DATE_BITS; // bits below the farm
+  private List<Farm> farms; // the farms of the FarmCollection, by position
+  private int[] farmRanks; // the place of each farm's name in alphabetical order, by position
+  private long[] rows; // each row's farm, packed date and position within its FarmYear's month
+  private int rowCount; // the number of rows held
+  private int[] order; // the row shown at each place in the table
+  private int shownCount; // the number of rows passing the filter
+  private int sortColumn = -1; // the column rows are sorted by, or -1 for storage order
+  private boolean ascending = true; // whether the sort is lightest or earliest first
+  private String filterFarmId; // the farm rows must belong to, or null for any
+  private int filterYear = -1; // the year rows must be in, or -1 for any
+  private int filterMonth = -1; // the month rows must be in, from 0-11, or -1 for any
+  
+  /**
+   * Constructs a new MilkTable over every weight of a FarmCollection, in the order the farms
+   * and their weights are stored.
+   * @param fc the FarmCollection to read the weights of
+   * @throws IllegalArgumentException if a farm, year or month holds more rows than can be
+   *    referenced
+   */
+  public MilkTable(FarmCollection fc) {
+    farms = fc.getFarmCollection();
+    rows = new long[Math.toIntExact(fc.countRows())];
+    for (int farm = 0; farm < farms.size(); farm++) {
+      for (FarmYear fy : farms.get(farm).getYearList()) {
+        for (int month = 0; month < 12; month++) {
+          int[] days = fy.daysInMonth(month);
+          int[] positions = fy.positionsInMonth(month);
+          for (int i = 0; i < days.length; i++) {
+            addRow(farm, MilkStat.packDate(fy.getYear(), month, days[i]), positions[i]);
+          }
+        }
+      }
+    }
+    rankFarms();
+    
+    order = new int[rowCount];
+    applyFilter();
+  }
+  
+  /**
+   * Appends a reference to a row.
+   * @param farm the position of the row's farm
+   * @param date the date of the row, packed by MilkStat.packDate
+   * @param position the position of the row within its FarmYear's month
+   * @throws IllegalArgumentException if any part does not fit in its bits
+   */
+  private void addRow(int farm, int date, int position) {
+    if (farm >>> (Long.SIZE - FARM_SHIFT) != 0 || date >>> DATE_BITS != 0
+        || position >>> POSITION_BITS != 0) {
+      throw new IllegalArgumentException("Too many rows to reference the row of farm " + farm
+          + " on " + MilkStat.toDateString(date) + ".");
+    }
+    rows[rowCount++] = (long) farm << FARM_SHIFT | (long) date << POSITION_BITS | position;
+  }
+  
+  /**
+   * Works out the alphabetical place of every farm's name, so rows can be sorted by farm with
+   * int comparisons rather than String ones.
+   */
+  private void rankFarms() {
+    Integer[] byName = new Integer[farms.size()];
+    for (int i = 0; i < byName.length; i++) {
+      byName[i] = i;
+    }
+    Arrays.sort(byName, (a, b) -> farms.get(a).getFarmId().compareTo(farms.get(b).getFarmId()));
+    farmRanks = new int[byName.length];
+    for (int rank = 0; rank < byName.length; rank++) {
+      farmRanks[byName[rank]] = rank;
+    }
+  }
+  
+  /**
+   * Shows only the rows of one farm, year or month, in the current sort order. Each part of the
+   * filter may be left out.
+   * @param farmId the farm rows must belong to, or null for any
+   * @param year the year rows must be in, or -1 for any
+   * @param month the month rows must be in, from 0-11, or -1 for any
+   */
+  public void filter(String farmId, int year, int month) {
+    filterFarmId = farmId;
+    filterYear = year;
+    filterMonth = month;
+    applyFilter();
+  }
+  
+  /**
+   * Rebuilds the order from the rows that pass the filter, then sorts it.
+   */
+  private void applyFilter() {
+    int farm = -1; // the position of the filter's farm, or -2 if there is no such farm
+    if (filterFarmId != null) {
+      farm = -2;
+      for (int index = 0; index < farmRanks.length; index++) {
+        if (farms.get(index).getFarmId().equals(filterFarmId)) {
+          farm = index;
+        }
+      }
+    }
+    
+    shownCount = 0;
+    for (int row = 0; row < rowCount; row++) {
+      int date = dateOf(rows[row]);
+      if ((farm == -1 || farmOf(rows[row]) == farm)
+          && (filterYear == -1 || MilkStat.yearOf(date) == filterYear)
+          && (filterMonth == -1 || MilkStat.monthOf(date) == filterMonth)) {
+        order[shownCount++] = row;
+      }
+    }
+    applySort();
+  }
+  
+  /**
+   * Sorts the rows shown by one column. Rows with equal values keep their order, so sorting by
+   * one column and then another sorts by both.
+   * @param column FARM, DATE or WEIGHT, or -1 to show the rows in the order they are stored
+   * @param ascending whether the sort is alphabetical, earliest or lightest first
+   * @throws IllegalArgumentException if the column is not one of the above
+   */
+  public void sort(int column, boolean ascending) {
+    if (column < -1 || column > WEIGHT) {
+      throw new IllegalArgumentException("There is no column " + column + ".");
+    }
+    sortColumn = column;
+    this.ascending = ascending;
+    if (column == -1) {
+      applyFilter(); // the filter leaves the rows in storage order
+    }
+    else {
+      applySort();
+    }
+  }
+  
+  /**
+   * Sorts the order by the sort column. Each row's key goes in the high half of a long and its
+   * place in the order in the low half, so one sort of primitives is both fast and stable.
+   */
+  private void applySort() {
+    if (sortColumn == -1) {
+      return;
+    }
+    int[] weights = sortColumn == WEIGHT ? readWeights() : null;
+    long[] keys = new long[shownCount];
+    for (int place = 0; place < shownCount; place++) {
+      long row = rows[order[place]];
+      int key = sortColumn == FARM ? farmRanks[farmOf(row)]
+          : sortColumn == DATE ? dateOf(row) : weights[order[place]];
+      keys[place] = (long) (ascending ? key : ~key) << 32 | place;
+    }
+    Arrays.sort(keys);
+    
+    int[] sorted = new int[order.length];
+    for (int place = 0; place < shownCount; place++) {
+      sorted[place] = order[(int) keys[place]];
+    }
+    order = sorted;
+  }
+  
+  /**
+   * Reads the weight of every row from storage in one pass. Rows are held in storage order, so
+   * each FarmYear is looked up once for its run of rows rather than once per row.
+   * @return the weight of each row, by row number
+   */
+  private int[] readWeights() {
+    int[] weights = new int[rowCount];
+    FarmYear fy = null;
+    long group = -1; // the farm and year of the rows fy holds
+    for (int row = 0; row < rowCount; row++) {
+      int date = dateOf(rows[row]);
+      long rowGroup = (long) farmOf(rows[row]) << Integer.SIZE | MilkStat.yearOf(date);
+      if (rowGroup != group) {
+        fy = farms.get(farmOf(rows[row])).findYear(MilkStat.yearOf(date));
+        group = rowGroup;
+      }
+      weights[row] = fy.weightAt(MilkStat.monthOf(date), positionOf(rows[row]));
+    }
+    return weights;
+  }
+  
+  /**
+   * Returns the position of the farm of a row.
+   * @param row the reference to the row
+   * @return the position of the farm in the FarmCollection
+   */
+  private static int farmOf(long row) {
+    return (int) (row >>> FARM_SHIFT);
+  }
+  
+  /**
+   * Returns the date of a row.
+   * @param row the reference to the row
+   * @return the date, packed by MilkStat.packDate
+   */
+  private static int dateOf(long row) {
+    return (int) (row >>> POSITION_BITS) & ((1 << DATE_BITS) - 1);
+  }
+  
+  /**
+   * Returns the position of a row within its FarmYear's month.
+   * @param row the reference to the row
+   * @return the position, as listed by FarmYear.positionsInMonth
+   */
+  private static int positionOf(long row) {
+    return (int) row & ((1 << POSITION_BITS) - 1);
+  }
+  
+  /**
+   * Reads the weight of a row from the FarmYear holding it.
+   * @param row the reference to the row
+   * @return the weight
+   */
+  private int weightOf(long row) {
+    int date = dateOf(row);
+    FarmYear fy = farms.get(farmOf(row)).findYear(MilkStat.yearOf(date));
+    return fy.weightAt(MilkStat.monthOf(date), positionOf(row));
+  }
+  
+  /**
+   * Returns a list of the places of the rows shown, from 0 to size() - 1, for use as the items of
+   * a TableView. The list holds no data of its own, and it stays the same size after filter() is
+   * called, so ask for a new one then.
+   * @return the places of the rows shown
+   */
+  public List<Integer> rows() {
+    int size = shownCount;
+    return new AbstractList<Integer>() {
+      @Override
+      public Integer get(int place) {
+        return place;
+      }
+      
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+  
+  /**
+   * Returns the number of rows shown, which are those passing the filter.
+   * @return the number of rows shown
+   */
+  public int size() {
+    return shownCount;
+  }
+  
+  /**
+   * Returns the number of rows held, shown or not.
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+  
+  /**
+   * Returns the name of the farm of a row.
+   * @param place the place of the row in the table
+   * @return the farm ID
+   */
+  public String getFarmId(int place) {
+    return farms.get(farmOf(rows[order[place]])).getFarmId();
+  }
+  
+  /**
+   * Returns the date of a row in the same form as MilkStat.getDateString().
+   * @param place the place of the row in the table
+   * @return the date
+   */
+  public String getDateString(int place) {
+    return MilkStat.toDateString(dateOf(rows[order[place]]));
+  }
+  
+  /**
+   * Returns the year of a row.
+   * @param place the place of the row in the table
+   * @return the year
+   */
+  public int getYear(int place) {
+    return MilkStat.yearOf(dateOf(rows[order[place]]));
+  }
+  
+  /**
+   * Returns the month of a row.
+   * @param place the place of the row in the table
+   * @return the month, from 0-11
+   */
+  public int getMonth(int place) {
+    return MilkStat.monthOf(dateOf(rows[order[place]]));
+  }
+  
+  /**
+   * Returns the day of the month of a row.
+   * @param place the place of the row in the table
+   * @return the day
+   */
+  public int getDay(int place) {
+    return MilkStat.dayOf(dateOf(rows[order[place]]));
+  }
+  
+  /**
+   * Returns the weight of a row, read from the FarmYear holding it.
+   * @param place the place of the row in the table
+   * @return the weight
+   */
+  public int getWeight(int place) {
+    return weightOf(rows[order[place]]);
+  }
+}
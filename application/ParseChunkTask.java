@@ -0,0 +1,58 @@
+package application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses one range of bytes of a CSV into its own FarmCollection, for use with a ForkJoinPool.
+ * Every task has its own FarmCollection and FarmDictionary, so tasks share nothing but the channel
+ * they read from.
+ */
+class ParseChunkTask extends RecursiveTask<FarmCollection> {
+  private static final long serialVersionUID = 1L;
+  private final FileChannel channel; // the channel to read the CSV from
+  private final long start; // the offset of the first byte of the range
+  private final long end; // the offset just past the last byte of the range
+  private final boolean skipHeader; // true if the range starts with the header line
+  private final FarmCollection partial; // the FarmCollection the range is parsed into
+  
+  /**
+   * Constructs a new ParseChunkTask.
+   * @param channel the channel to read the CSV from
+   * @param start the offset of the first byte of the range, at the start of a line
+   * @param end the offset just past the last byte of the range, at the end of a line
+   * @param skipHeader true if the first line of the range should be skipped
+   * @param partial the empty FarmCollection to parse the range into
+   */
+  ParseChunkTask(FileChannel channel, long start, long end, boolean skipHeader,
+      FarmCollection partial) {
+    this.channel = channel;
+    this.start = start;
+    this.end = end;
+    this.skipHeader = skipHeader;
+    this.partial = partial;
+  }
+  
+  /**
+   * Parses the range into the partial FarmCollection.
+   * @return the FarmCollection holding every row in the range
+   * @throws UncheckedIOException if the range cannot be parsed, or its rows are refused by the
+   *    partial's DuplicatePolicy
+   */
+  @Override
+  protected FarmCollection compute() {
+    try {
+      FarmParser.parseMapped(channel, start, end, skipHeader, new FarmDictionary(),
+          partial::addMilkWeight);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch (IllegalArgumentException e) { // a weight refused by the DuplicatePolicy
+      throw new UncheckedIOException(new IOException(e.getMessage(), e));
+    }
+    return partial;
+  }
+}
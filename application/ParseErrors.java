@@ -0,0 +1,178 @@
+package application;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The lines of a CSV that a lenient parse rejected, with the line number and reason for each.
+ * Every rejected line is counted, but only the first MAX_KEPT are kept in full, so a file that is
+ * mostly garbage cannot use up the heap. The kept lines can be written to an error sidecar next
+ * to the CSV with writeSidecar().
+ *
+ * <p>A ParseErrors also counts the lines parsed so far, so handing the same one to the ranges of
+ * a file in order numbers their lines as one file.
+ */
+public class ParseErrors {
+  public static final int MAX_KEPT = 1000; // the most rejected lines kept in full
+  private static final int MAX_TEXT = 200; // the most characters of a rejected line kept
+  private File source; // the CSV the lines came from, or null if unknown
+  private List<Long> lineNumbers; // the line number of each kept line, from 1
+  private List<String> reasons; // why each kept line was rejected
+  private List<String> texts; // the text of each kept line, cut to MAX_TEXT characters
+  private long rejectedCount; // the number of lines rejected, kept or not
+  private long lineCount; // the number of lines parsed so far, header and blank lines included
+  
+  /**
+   * Constructs a new empty ParseErrors.
+   * @param source the CSV the lines come from, or null if unknown
+   */
+  public ParseErrors(File source) {
+    this.source = source;
+    lineNumbers = new ArrayList<>();
+    reasons = new ArrayList<>();
+    texts = new ArrayList<>();
+  }
+  
+  /**
+   * Records a rejected line.
+   * @param lineNumber the number of the line, from 1
+   * @param reason why the line was rejected
+   * @param text the text of the line
+   */
+  public void reject(long lineNumber, String reason, String text) {
+    rejectedCount++;
+    if (lineNumbers.size() < MAX_KEPT) {
+      lineNumbers.add(lineNumber);
+      reasons.add(reason);
+      texts.add(text.length() > MAX_TEXT ? text.substring(0, MAX_TEXT) : text);
+    }
+  }
+  
+  /**
+   * Writes every kept line to a CSV of the format "line,reason,text". Fields holding commas or
+   * quotes are quoted.
+   * @param file the file to write to
+   * @throws IOException if the file cannot be written
+   */
+  public void writeSidecar(File file) throws IOException {
+    try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+      out.write("line,reason,text");
+      out.newLine();
+      for (int i = 0; i < lineNumbers.size(); i++) {
+        out.write(lineNumbers.get(i) + "," + quote(reasons.get(i)) + "," + quote(texts.get(i)));
+        out.newLine();
+      }
+      if (rejectedCount > lineNumbers.size()) {
+        out.write(",...," + (rejectedCount - lineNumbers.size()) + " more lines not kept");
+        out.newLine();
+      }
+    }
+  }
+  
+  /**
+   * Returns the error sidecar of a CSV: a file next to it with ".errors.csv" appended to its name.
+   * @param csv the CSV
+   * @return the sidecar
+   */
+  public static File sidecarFor(File csv) {
+    return new File(csv.getPath() + ".errors.csv");
+  }
+  
+  /**
+   * Quotes text for a CSV field if it holds a comma or a quote.
+   * @param text the text
+   * @return the field
+   */
+  private static String quote(String text) {
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0) {
+      return text;
+    }
+    return "\"" + text.replace("\"", "\"\"") + "\"";
+  }
+  
+  /**
+   * Returns the CSV the lines came from.
+   * @return the CSV, or null if unknown
+   */
+  public File getSource() {
+    return source;
+  }
+  
+  /**
+   * Returns the number of lines rejected, including those not kept in full.
+   * @return the number of lines rejected
+   */
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+  
+  /**
+   * Returns the number of rejected lines kept in full.
+   * @return the number of lines kept
+   */
+  public int size() {
+    return lineNumbers.size();
+  }
+  
+  /**
+   * Returns the line number of a kept line.
+   * @param i the index of the kept line
+   * @return the line number, from 1
+   */
+  public long getLineNumber(int i) {
+    return lineNumbers.get(i);
+  }
+  
+  /**
+   * Returns why a kept line was rejected.
+   * @param i the index of the kept line
+   * @return the reason
+   */
+  public String getReason(int i) {
+    return reasons.get(i);
+  }
+  
+  /**
+   * Returns the text of a kept line, cut to MAX_TEXT characters.
+   * @param i the index of the kept line
+   * @return the text
+   */
+  public String getText(int i) {
+    return texts.get(i);
+  }
+  
+  /**
+   * Returns the number of lines parsed so far, including the header, blank lines and rejected
+   * lines.
+   * @return the number of lines
+   */
+  public long getLineCount() {
+    return lineCount;
+  }
+  
+  /**
+   * Sets the number of lines parsed so far, once the parser has read more.
+   * @param lineCount the number of lines
+   */
+  void setLineCount(long lineCount) {
+    this.lineCount = lineCount;
+  }
+  
+  /**
+   * Returns a short summary of the rejected lines, for showing to the user.
+   * @return the number of lines rejected and the first of them
+   */
+  @Override
+  public String toString() {
+    if (rejectedCount == 0) {
+      return "No lines rejected.";
+    }
+    String reason = reasons.get(0);
+    return rejectedCount + (rejectedCount == 1 ? " line" : " lines") + " rejected; the first was"
+        + " line " + lineNumbers.get(0) + ": " + reason + (reason.endsWith(".") ? "" : ".");
+  }
+}
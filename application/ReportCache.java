@@ -0,0 +1,292 @@
+package application;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the MilkReports built for a FarmCollection. Reports are
+ * built from the FarmCollection's most recently published view, so they never see a half-applied
+ * change; data added since the last FarmCollection.publish() is not reported. Each report is
+ * stored with the version of the data it was built from and is rebuilt only once that data has
+ * changed. Repeating a report, or going back to one shown recently, then costs a hash lookup.
+ * 
+ * <p>A ReportCache is not thread-safe, but it never touches the FarmCollection itself, so it may
+ * be used from a different thread than the one adding data. Reports handed out are shared, so
+ * they must not be changed.
+ */
+public class ReportCache {
+  public static final int DEFAULT_CAPACITY = 64;
+  private static final int FARM_REPORT = 0;
+  private static final int MONTHLY_FARM_REPORT = 1;
+  private static final int FARM_COLLECTION_REPORT = 2;
+  private static final int MONTHLY_FARM_COLLECTION_REPORT = 3;
+  private static final int TOP_FARM_COLLECTION_REPORT = 4;
+  private static final int TOP_MONTHLY_FARM_COLLECTION_REPORT = 5;
+  private FarmCollection fc; // the FarmCollection whose published views reports are built from
+  private LinkedHashMap<Key, Entry> entries; // every cached report, least recently used first
+  private long hits; // the number of reports served from the cache
+  private long misses; // the number of reports that had to be built
+  
+  /**
+   * Constructs a new empty ReportCache holding up to DEFAULT_CAPACITY reports.
+   * @param fc the FarmCollection to build reports from
+   */
+  public ReportCache(FarmCollection fc) {
+    this(fc, DEFAULT_CAPACITY);
+  }
+  
+  /**
+   * Constructs a new empty ReportCache.
+   * @param fc the FarmCollection to build reports from
+   * @param capacity the largest number of reports to keep; the least recently used is dropped
+   *    to make room for more
+   */
+  public ReportCache(FarmCollection fc, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1.");
+    }
+    this.fc = fc;
+    entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+  
+  /**
+   * Returns the report of the weight of one farm, per month, for a given year.
+   * @param farmId the name of the farm to draw data from
+   * @param year the year to draw data from
+   * @return the report, or null if there is no such farm
+   * @see MilkReport#farmReport(Farm, int)
+   */
+  public MilkReport farmReport(String farmId, int year) {
+    return farmReport(FARM_REPORT, farmId, year, 0);
+  }
+  
+  /**
+   * Returns the report of the weight of one farm for a given year and month.
+   * @param farmId the name of the farm to draw data from
+   * @param year the year to draw data from
+   * @param month the month to draw data from, from 0-11
+   * @return the report, or null if there is no such farm
+   * @see MilkReport#monthlyFarmReport(Farm, int, int)
+   */
+  public MilkReport monthlyFarmReport(String farmId, int year, int month) {
+    return farmReport(MONTHLY_FARM_REPORT, farmId, year, month);
+  }
+  
+  /**
+   * Returns the report of the weight of every farm, per month, for a given year.
+   * @param year the year to draw data from
+   * @return the report
+   * @see MilkReport#farmCollectionReport(FarmCollection, int)
+   */
+  public MilkReport farmCollectionReport(int year) {
+    return collectionReport(FARM_COLLECTION_REPORT, year, 0, 0, 0);
+  }
+  
+  /**
+   * Returns the report of the weight of every farm for a given year and month.
+   * @param year the year to draw data from
+   * @param month the month to draw data from, from 0-11
+   * @return the report
+   * @see MilkReport#monthlyFarmCollectionReport(FarmCollection, int, int)
+   */
+  public MilkReport monthlyFarmCollectionReport(int year, int month) {
+    return collectionReport(MONTHLY_FARM_COLLECTION_REPORT, year, month, 0, 0);
+  }
+  
+  /**
+   * Returns the level-of-detail report of the weight of farms, per month, for a given year.
+   * @param year the year to draw data from
+   * @param offset the rank of the first farm to report, from 0 for the heaviest farm
+   * @param count the largest number of farms to report individually
+   * @return the report
+   * @see MilkReport#farmCollectionReport(FarmCollectionView, int, int, int)
+   */
+  public MilkReport farmCollectionReport(int year, int offset, int count) {
+    return collectionReport(TOP_FARM_COLLECTION_REPORT, year, 0, offset, count);
+  }
+  
+  /**
+   * Returns the level-of-detail report of the weight of farms for a given year and month.
+   * @param year the year to draw data from
+   * @param month the month to draw data from, from 0-11
+   * @param offset the rank of the first farm to report, from 0 for the heaviest farm
+   * @param count the largest number of farms to report individually
+   * @return the report
+   * @see MilkReport#monthlyFarmCollectionReport(FarmCollectionView, int, int, int, int)
+   */
+  public MilkReport monthlyFarmCollectionReport(int year, int month, int offset, int count) {
+    return collectionReport(TOP_MONTHLY_FARM_COLLECTION_REPORT, year, month, offset, count);
+  }
+  
+  /**
+   * Returns a report of one farm, building it if it is not cached or its farm-year has changed.
+   * @param type the kind of report
+   * @param farmId the name of the farm
+   * @param year the year of the report
+   * @param month the month of the report, if it has one
+   * @return the report, or null if there is no such farm
+   */
+  private MilkReport farmReport(int type, String farmId, int year, int month) {
+    FarmCollectionView view = fc.getView();
+    int farmIndex = view.indexOfFarm(farmId);
+    if (farmIndex < 0) {
+      return null;
+    }
+    
+    Key key = new Key(type, farmIndex, year, month, 0, 0);
+    long version = view.getVersion(farmIndex, year);
+    MilkReport report = lookup(key, version);
+    if (report == null) {
+      long start = System.nanoTime();
+      if (type == FARM_REPORT) {
+        report = MilkReport.farmReport(view, farmIndex, year);
+      }
+      else {
+        report = MilkReport.monthlyFarmReport(view, farmIndex, year, month);
+      }
+      (type == FARM_REPORT ? MilkMetrics.FARM_REPORT : MilkMetrics.MONTHLY_FARM_REPORT)
+          .recordSince(start); // only builds are timed; hits are counted by getHits()
+      entries.put(key, new Entry(report, version));
+    }
+    return report;
+  }
+  
+  /**
+   * Returns a report of every farm, building it if it is not cached, its year has changed or
+   * farms have been added since it was built.
+   * @param type the kind of report
+   * @param year the year of the report
+   * @param month the month of the report, if it has one
+   * @param offset the rank of the first farm reported, for level-of-detail reports
+   * @param count the number of farms reported individually, for level-of-detail reports
+   * @return the report
+   */
+  private MilkReport collectionReport(int type, int year, int month, int offset, int count) {
+    FarmCollectionView view = fc.getView();
+    Key key = new Key(type, -1, year, month, offset, count);
+    long version = (long) view.getFarmCount() << 32 | (view.getYearVersion(year) & 0xFFFFFFFFL);
+    MilkReport report = lookup(key, version);
+    if (report == null) {
+      long start = System.nanoTime();
+      if (type == FARM_COLLECTION_REPORT) {
+        report = MilkReport.farmCollectionReport(view, year);
+      }
+      else if (type == MONTHLY_FARM_COLLECTION_REPORT) {
+        report = MilkReport.monthlyFarmCollectionReport(view, year, month);
+      }
+      else if (type == TOP_FARM_COLLECTION_REPORT) {
+        report = MilkReport.farmCollectionReport(view, year, offset, count);
+      }
+      else {
+        report = MilkReport.monthlyFarmCollectionReport(view, year, month, offset, count);
+      }
+      boolean monthly = type == MONTHLY_FARM_COLLECTION_REPORT
+          || type == TOP_MONTHLY_FARM_COLLECTION_REPORT;
+      (monthly ? MilkMetrics.MONTHLY_FARM_COLLECTION_REPORT : MilkMetrics.FARM_COLLECTION_REPORT)
+          .recordSince(start);
+      entries.put(key, new Entry(report, version));
+    }
+    return report;
+  }
+  
+  /**
+   * Finds a cached report and counts the hit or miss.
+   * @param key the report to find
+   * @param version the current version of the data the report is built from
+   * @return the cached report, or null if it is missing or was built from older data
+   */
+  private MilkReport lookup(Key key, long version) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.version == version) {
+      hits++;
+      return entry.report;
+    }
+    misses++;
+    return null;
+  }
+  
+  /**
+   * Drops every cached report. The hit and miss counts are kept.
+   */
+  public void clear() {
+    entries.clear();
+  }
+  
+  /**
+   * Returns the number of reports currently cached.
+   * @return the number of reports
+   */
+  public int size() {
+    return entries.size();
+  }
+  
+  /**
+   * Returns the number of reports that were served from the cache.
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits;
+  }
+  
+  /**
+   * Returns the number of reports that had to be built.
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses;
+  }
+  
+  /**
+   * Identifies a report by its kind, farm, year, month and range of ranked farms.
+   */
+  private static final class Key {
+    private final int type;
+    private final int farmIndex; // -1 for reports of every farm
+    private final int year;
+    private final int month;
+    private final int offset; // 0 unless a level-of-detail report
+    private final int count; // 0 unless a level-of-detail report
+    
+    Key(int type, int farmIndex, int year, int month, int offset, int count) {
+      this.type = type;
+      this.farmIndex = farmIndex;
+      this.year = year;
+      this.month = month;
+      this.offset = offset;
+      this.count = count;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return type == other.type && farmIndex == other.farmIndex && year == other.year
+          && month == other.month && offset == other.offset && count == other.count;
+    }
+    
+    @Override
+    public int hashCode() {
+      return ((((type * 31 + farmIndex) * 31 + year) * 31 + month) * 31 + offset) * 31 + count;
+    }
+  }
+  
+  /**
+   * A cached report and the version of the data it was built from.
+   */
+  private static final class Entry {
+    private final MilkReport report;
+    private final long version;
+    
+    Entry(MilkReport report, long version) {
+      this.report = report;
+      this.version = version;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package application;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A streaming summary of a set of weights: the count, mean and variance (kept with Welford's
+ * algorithm), the minimum and maximum, and a KLL quantile sketch for medians and percentiles.
+ * Adding a weight takes amortized O(1) time and two sketches can be merged without the weights
+ * that built them, so summaries of months and farms combine into summaries of whole years and
+ * collections.
+ * 
+ * <p>The KLL sketch keeps weights in levels of compactors. Level h holds weights that each stand
+ * for 2^h of the originals; when a level fills it is sorted and every other weight is promoted to
+ * the level above. Until the first level fills, every weight is kept and quantiles are exact.
+ */
+public class WeightSketch {
+  public static final int DEFAULT_K = 200;
+  private static final double CAPACITY_RATIO = 2.0 / 3.0; // how much smaller each lower level is
+  private static final int MIN_CAPACITY = 2;
+  private static final int INITIAL_LEVEL_SIZE = 8;
+  private static final int[][] NO_LEVELS = new int[0][];
+  private static final int[] NO_SIZES = new int[0];
+  private int k; // the capacity of the highest level, which bounds the error of the sketch
+  private long count; // the number of weights added
+  private double mean; // the running mean of the weights
+  private double m2; // the running sum of squared differences from the mean
+  private int min; // the smallest weight added
+  private int max; // the largest weight added
+  private int[][] levels; // the weights kept at each level of the KLL sketch
+  private int[] levelSizes; // the number of weights kept at each level
+  private int levelCount; // the number of levels in use
+  private int retained; // the number of weights kept across every level
+  private int maxRetained; // the total capacity of every level in use
+  
+  /**
+   * Constructs a new empty WeightSketch with a KLL parameter of DEFAULT_K, for a quantile error
+   * of around 1%.
+   */
+  public WeightSketch() {
+    this(DEFAULT_K);
+  }
+  
+  /**
+   * Constructs a new empty WeightSketch.
+   * @param k the KLL parameter; larger values keep more weights and give more accurate quantiles
+   */
+  public WeightSketch(int k) {
+    if (k < MIN_CAPACITY) {
+      throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ".");
+    }
+    this.k = k;
+    levels = NO_LEVELS; // shared until the first weight is added, since many sketches stay empty
+    levelSizes = NO_SIZES;
+  }
+  
+  /**
+   * Adds a weight to this WeightSketch.
+   * @param weight the weight to add
+   */
+  public void add(int weight) {
+    if (count == 0) {
+      min = weight;
+      max = weight;
+    }
+    else {
+      min = Math.min(min, weight);
+      max = Math.max(max, weight);
+    }
+    count++;
+    double delta = weight - mean;
+    mean += delta / count;
+    m2 += delta * (weight - mean);
+    
+    if (levelCount == 0) {
+      grow();
+    }
+    append(0, weight);
+    retained++;
+    if (retained >= maxRetained) {
+      compress();
+    }
+  }
+  
+  /**
+   * Adds every weight summarized by another WeightSketch to this one. The other WeightSketch is
+   * not changed.
+   * @param other the WeightSketch to merge in
+   */
+  public void merge(WeightSketch other) {
+    if (other.count == 0) {
+      return;
+    }
+    if (count == 0) {
+      min = other.min;
+      max = other.max;
+    }
+    else {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+    long total = count + other.count;
+    double delta = other.mean - mean;
+    mean += delta * other.count / total;
+    m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+    count = total;
+    
+    while (levelCount < other.levelCount) {
+      grow();
+    }
+    for (int h = 0; h < other.levelCount; h++) {
+      for (int i = 0; i < other.levelSizes[h]; i++) {
+        append(h, other.levels[h][i]);
+      }
+      retained += other.levelSizes[h];
+    }
+    while (retained >= maxRetained) {
+      compress();
+    }
+  }
+  
+  /**
+   * Returns the number of weights added.
+   * @return the number of weights
+   */
+  public long getCount() {
+    return count;
+  }
+  
+  /**
+   * Returns the mean of the weights added.
+   * @return the mean, or 0 if no weights were added
+   */
+  public double getMean() {
+    return mean;
+  }
+  
+  /**
+   * Returns the population variance of the weights added.
+   * @return the variance, or 0 if no weights were added
+   */
+  public double getVariance() {
+    if (count == 0) {
+      return 0;
+    }
+    return m2 / count;
+  }
+  
+  /**
+   * Returns the population standard deviation of the weights added.
+   * @return the standard deviation, or 0 if no weights were added
+   */
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+  
+  /**
+   * Returns the smallest weight added.
+   * @return the smallest weight, or 0 if no weights were added
+   */
+  public int getMin() {
+    return min;
+  }
+  
+  /**
+   * Returns the largest weight added.
+   * @return the largest weight, or 0 if no weights were added
+   */
+  public int getMax() {
+    return max;
+  }
+  
+  /**
+   * Returns the weight at a quantile, by the nearest-rank method: the smallest weight at least a
+   * fraction q of the weights are less than or equal to. Exact while few enough weights have been
+   * added that none were compacted, and otherwise off by around 1% of the count in rank.
+   * @param q the quantile, from 0 to 1; 0.5 is the median and 0.99 the 99th percentile
+   * @return the weight at the quantile, or 0 if no weights were added
+   * @throws IllegalArgumentException if q is not between 0 and 1
+   */
+  public int quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+    }
+    if (count == 0) {
+      return 0;
+    }
+    if (q == 0) {
+      return min;
+    }
+    
+    // pack each weight with its level so one sort orders them all
+    long[] packed = new long[retained];
+    int n = 0;
+    long totalWeight = 0;
+    for (int h = 0; h < levelCount; h++) {
+      for (int i = 0; i < levelSizes[h]; i++) {
+        packed[n++] = ((long) levels[h][i] << 6) | h;
+      }
+      totalWeight += (long) levelSizes[h] << h;
+    }
+    Arrays.sort(packed);
+    
+    double target = q * totalWeight;
+    long cumulative = 0;
+    for (long entry : packed) {
+      cumulative += 1L << (entry & 0x3F);
+      if (cumulative >= target) {
+        return (int) (entry >> 6);
+      }
+    }
+    return max;
+  }
+  
+  /**
+   * Returns the median of the weights added.
+   * @return the median, or 0 if no weights were added
+   */
+  public int getMedian() {
+    return quantile(0.5);
+  }
+  
+  /**
+   * Adds a weight to the end of a level, growing the level if it is full.
+   * @param h the level to add to
+   * @param weight the weight to add
+   */
+  private void append(int h, int weight) {
+    if (levelSizes[h] == levels[h].length) {
+      levels[h] = Arrays.copyOf(levels[h], levelSizes[h] * 2);
+    }
+    levels[h][levelSizes[h]++] = weight;
+  }
+  
+  /**
+   * Adds an empty level above the others, which shrinks the capacity of every level below it.
+   */
+  private void grow() {
+    if (levelCount == levels.length) {
+      levels = Arrays.copyOf(levels, levelCount + 1);
+      levelSizes = Arrays.copyOf(levelSizes, levelCount + 1);
+      levels[levelCount] = new int[INITIAL_LEVEL_SIZE];
+    }
+    levelCount++;
+    maxRetained = 0;
+    for (int h = 0; h < levelCount; h++) {
+      maxRetained += capacity(h);
+    }
+  }
+  
+  /**
+   * Returns how many weights a level holds before it is compacted.
+   * @param h the level
+   * @return the capacity of the level
+   */
+  private int capacity(int h) {
+    int depth = levelCount - h - 1;
+    return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)) + 1);
+  }
+  
+  /**
+   * Compacts full levels, from the lowest up, until the sketch is back within its capacity.
+   * Compacting a level sorts it and promotes every other weight, starting from a random one of the
+   * first two, to the level above. If the level holds an odd number of weights, one stays behind.
+   */
+  private void compress() {
+    for (int h = 0; h < levelCount; h++) {
+      if (levelSizes[h] < capacity(h)) {
+        continue;
+      }
+      if (h + 1 == levelCount) {
+        grow();
+      }
+      int[] level = levels[h];
+      int size = levelSizes[h];
+      Arrays.sort(level, 0, size);
+      int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+      int pairs = size / 2;
+      for (int i = 0; i < pairs; i++) {
+        append(h + 1, level[size - 1 - 2 * i - offset]);
+      }
+      levelSizes[h] = size % 2; // if one is left over, it is the smallest, already at level[0]
+      retained -= pairs; // two weights of level h became one of level h + 1
+      if (retained < maxRetained) {
+        break;
+      }
+    }
+  }
+}
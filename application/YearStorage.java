@@ -0,0 +1,143 @@
+package application;
+
+import java.util.ArrayList;
+
+/**
+ * Holds the weights of one FarmYear, month by month. FarmYear keeps every total itself and leaves
+ * only the weights to its storage: a list of MilkStats per month, rows in shared columns, or a
+ * slot for each day. Each weight of a month sits at a position, listed by positionsInMonth, from
+ * which its day and weight can be read back.
+ * 
+ * <p>Only storage keyed by day can find, change or remove the weight of a day; any other storage
+ * refuses to.
+ */
+interface YearStorage {
+  
+  /**
+   * Stores a weight. Storage keyed by day must only be given a day that holds no weight yet.
+   * @param year the year the weight was recorded in
+   * @param month the month the weight was recorded in, from 0-11
+   * @param day the day of the month the weight was recorded on
+   * @param weight the weight of milk recorded
+   * @param farmId the name of the farm the weight belongs to
+   */
+  void add(int year, int month, int day, int weight, String farmId);
+  
+  /**
+   * Stores the weight of a MilkStat, keeping the MilkStat itself if this storage holds MilkStats.
+   * @param ms the MilkStat to store
+   */
+  default void add(MilkStat ms) {
+    add(ms.getYear(), ms.getMonth(), ms.getDay(), ms.getWeight(), ms.getFarmId());
+  }
+  
+  /**
+   * Returns the position of every weight of a month, in the order they are held.
+   * @param month the month to list, from 0-11
+   * @param count the number of weights the month holds
+   * @return the positions of the weights
+   */
+  default int[] positionsInMonth(int month, int count) {
+    int[] positions = new int[count];
+    for (int i = 0; i < count; i++) {
+      positions[i] = i;
+    }
+    return positions;
+  }
+  
+  /**
+   * Returns the day of the month of the weight at a position.
+   * @param month the month of the weight, from 0-11
+   * @param position the position of the weight, as listed by positionsInMonth
+   * @return the day of the month
+   */
+  int dayAt(int month, int position);
+  
+  /**
+   * Returns the weight at a position.
+   * @param month the month of the weight, from 0-11
+   * @param position the position of the weight, as listed by positionsInMonth
+   * @return the weight, or 0 if storage keyed by day no longer holds one there
+   */
+  int weightAt(int month, int position);
+  
+  /**
+   * Returns the MilkStat held at a position, if this storage holds MilkStats.
+   * @param month the month of the weight, from 0-11
+   * @param position the position of the weight, as listed by positionsInMonth
+   * @return the MilkStat, or null if this storage holds only primitives
+   */
+  default MilkStat milkStatAt(int month, int position) {
+    return null;
+  }
+  
+  /**
+   * Returns the MilkStats of a month. Storage that holds MilkStats returns its own list; any other
+   * builds a new one, and changing it has no effect.
+   * @param year the year this storage belongs to
+   * @param month the month to list, from 0-11
+   * @param farmId the name of the farm this storage belongs to
+   * @param positions the position of every weight of the month
+   * @return the MilkStats of the month
+   */
+  default ArrayList<MilkStat> milkStatsInMonth(int year, int month, String farmId,
+      int[] positions) {
+    ArrayList<MilkStat> monthList = new ArrayList<MilkStat>(positions.length);
+    for (int position : positions) {
+      monthList.add(new MilkStat(year, month, dayAt(month, position), farmId,
+          weightAt(month, position)));
+    }
+    return monthList;
+  }
+  
+  /**
+   * Returns whether a day holds a weight.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return whether the day holds a weight
+   * @throws UnsupportedOperationException if this storage is not keyed by day
+   */
+  default boolean hasWeightOnDay(int month, int day) {
+    throw notKeyedByDay();
+  }
+  
+  /**
+   * Returns the weight a day holds.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @return the weight of the day, or 0 if it holds none
+   * @throws UnsupportedOperationException if this storage is not keyed by day
+   */
+  default int getWeightOnDay(int month, int day) {
+    throw notKeyedByDay();
+  }
+  
+  /**
+   * Changes the weight of a day that already holds one.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @param weight the new weight
+   * @throws UnsupportedOperationException if this storage is not keyed by day
+   */
+  default void setWeightOnDay(int month, int day, int weight) {
+    throw notKeyedByDay();
+  }
+  
+  /**
+   * Removes the weight of a day that holds one.
+   * @param month the month of the day, from 0-11
+   * @param day the day of the month
+   * @throws UnsupportedOperationException if this storage is not keyed by day
+   */
+  default void removeWeightOnDay(int month, int day) {
+    throw notKeyedByDay();
+  }
+  
+  /**
+   * Builds the exception thrown when storage that is not keyed by day is asked about a day.
+   * @return the exception
+   */
+  static UnsupportedOperationException notKeyedByDay() {
+    return new UnsupportedOperationException("Only a day-slotted FarmYear is indexed by day.");
+  }
+}
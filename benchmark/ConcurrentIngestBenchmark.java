@@ -0,0 +1,181 @@
+package benchmark;
+
+import application.ConcurrentFarmCollection;
+import application.FarmCollection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how ingest scales with the number of threads adding at once, comparing a single
+ * FarmCollection behind one lock with a striped ConcurrentFarmCollection. The rows are split into
+ * one contiguous slice per thread, as if each thread were reading its own CSV export, so every
+ * thread adds to every farm.
+ */
+public class ConcurrentIngestBenchmark {
+  private static final int FARMS = 2000;
+  private static final int DAYS = 365; // rows per farm
+  private static final int YEAR = 2019;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 5;
+  
+  /**
+   * A way of adding rows from several threads at once.
+   */
+  private interface Target {
+    
+    /**
+     * Adds a weight. Called from several threads at once.
+     * @param month the month the weight was recorded in, from 0-11
+     * @param day the day of the month the weight was recorded on
+     * @param farmId the name of the farm the weight belongs to
+     * @param weight the weight of milk recorded
+     */
+    void add(int month, int day, String farmId, int weight);
+  }
+  
+  /**
+   * Runs the benchmark and prints one line per thread count.
+   * @param args unused
+   * @throws Exception if a round fails
+   */
+  public static void main(String[] args) throws Exception {
+    Rows rows = new Rows();
+    int processors = Runtime.getRuntime().availableProcessors();
+    List<Integer> threadCounts = new ArrayList<>();
+    for (int threads = 1; threads < processors; threads *= 2) {
+      threadCounts.add(threads);
+    }
+    threadCounts.add(processors);
+    
+    System.out.println("threads\trows\tlocked ms\tstriped ms\tspeedup");
+    for (int threads : threadCounts) {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try {
+        long locked = best(pool, threads, rows, false);
+        long striped = best(pool, threads, rows, true);
+        System.out.printf("%d\t%d\t%.1f\t\t%.1f\t\t%.2f%n", threads, rows.count, locked / 1e6,
+            striped / 1e6, (double) locked / striped);
+      }
+      finally {
+        pool.shutdown();
+      }
+    }
+  }
+  
+  /**
+   * Warms up, then returns the best time of several rounds of ingest into one kind of target.
+   * @param pool the threads to add from
+   * @param threads the number of threads in pool
+   * @param rows the rows to add
+   * @param striped whether to add to a ConcurrentFarmCollection rather than a locked
+   *    FarmCollection
+   * @return the best time taken, in nanoseconds
+   * @throws Exception if a round fails
+   */
+  private static long best(ExecutorService pool, int threads, Rows rows, boolean striped)
+      throws Exception {
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      ingest(pool, threads, rows, striped);
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < MEASURED_ROUNDS; round++) {
+      best = Math.min(best, ingest(pool, threads, rows, striped));
+    }
+    return best;
+  }
+  
+  /**
+   * Adds every row to a new target, each thread adding its own slice of the rows.
+   * @param pool the threads to add from
+   * @param threads the number of threads in pool
+   * @param rows the rows to add
+   * @param striped whether to add to a ConcurrentFarmCollection rather than a locked
+   *    FarmCollection
+   * @return the time taken, in nanoseconds
+   * @throws Exception if a thread fails
+   */
+  private static long ingest(ExecutorService pool, int threads, Rows rows, boolean striped)
+      throws Exception {
+    long start = System.nanoTime();
+    ConcurrentFarmCollection concurrent = striped ? new ConcurrentFarmCollection() : null;
+    FarmCollection locked = striped ? null : new FarmCollection();
+    Target target;
+    if (striped) {
+      target = (month, day, farmId, weight) ->
+          concurrent.addMilkWeight(YEAR, month, day, farmId, weight);
+    }
+    else {
+      target = (month, day, farmId, weight) -> {
+        synchronized (locked) {
+          locked.addMilkWeight(YEAR, month, day, farmId, weight);
+        }
+      };
+    }
+    
+    List<Future<?>> slices = new ArrayList<>(threads);
+    for (int thread = 0; thread < threads; thread++) {
+      int from = (int) ((long) rows.count * thread / threads);
+      int to = (int) ((long) rows.count * (thread + 1) / threads);
+      slices.add(pool.submit(() -> rows.addTo(target, from, to)));
+    }
+    for (Future<?> slice : slices) {
+      slice.get();
+    }
+    long elapsed = System.nanoTime() - start;
+    
+    long added = striped ? concurrent.getRowCount() : locked.countRows();
+    if (added != rows.count) {
+      throw new IllegalStateException("Added " + added + " of " + rows.count + " rows.");
+    }
+    return elapsed;
+  }
+  
+  /**
+   * Rows ordered the way a CSV export is, by date and then by farm, held as primitives so that
+   * building them is not timed.
+   */
+  private static final class Rows {
+    private final int count = FARMS * DAYS; // the number of rows
+    private final String[] farmIds = new String[FARMS]; // the name of each farm
+    private final int[] months = new int[count]; // the month of each row, from 0-11
+    private final int[] days = new int[count]; // the day of the month of each row
+    private final int[] farms = new int[count]; // the farm of each row
+    private final int[] weights = new int[count]; // the weight of each row
+    
+    /**
+     * Builds the rows, one per farm for every day of YEAR.
+     */
+    private Rows() {
+      for (int f = 0; f < FARMS; f++) {
+        farmIds[f] = "Farm " + f;
+      }
+      int i = 0;
+      for (int dayOfYear = 1; dayOfYear <= DAYS; dayOfYear++) {
+        LocalDate date = LocalDate.ofYearDay(YEAR, dayOfYear);
+        for (int f = 0; f < FARMS; f++) {
+          months[i] = date.getMonthValue() - 1;
+          days[i] = date.getDayOfMonth();
+          farms[i] = f;
+          weights[i] = 5000 + (f * 31 + dayOfYear * 17) % 4000;
+          i++;
+        }
+      }
+    }
+    
+    /**
+     * Adds a slice of the rows to a target.
+     * @param target the target to add to
+     * @param from the first row to add
+     * @param to the row after the last to add
+     */
+    private void addTo(Target target, int from, int to) {
+      for (int i = from; i < to; i++) {
+        target.add(months[i], days[i], farmIds[farms[i]], weights[i]);
+      }
+    }
+  }
+}
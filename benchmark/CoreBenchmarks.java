@@ -0,0 +1,263 @@
+package benchmark;
+
+import application.Farm;
+import application.FarmCollection;
+import application.FarmParser;
+import application.FarmYear;
+import application.MilkReport;
+import application.MilkStat;
+import application.ParseErrors;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the parse, ingest, aggregate and report paths of Milk Weights, none of which
+ * need JavaFX. Every benchmark is run for each combination of row count and farm count; either
+ * can be overridden on the command line, e.g. "-p rows=100000 -p farms=100,1000". Run through
+ * main, the GC profiler is always on, so the allocation rate and bytes allocated per operation are
+ * reported alongside the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoreBenchmarks {
+  private static final int YEAR = 2019;
+  private static final int LINES = 10_000; // the lines parsed one at a time per operation
+  @Param({"100000", "1000000"})
+  public int rows; // the number of rows of data
+  @Param({"100", "1000"})
+  public int farms; // the number of distinct farms
+  private File csv; // a CSV holding every row
+  private String[] lines; // the text of the first LINES rows
+  private List<MilkStat> parsed; // every row, parsed
+  private FarmCollection fc; // every row, loaded
+  private Farm first; // the first farm of fc
+
+  /**
+   * Runs every benchmark with the GC profiler.
+   * @param args any further JMH options, such as "-p rows=100000"
+   * @throws Exception if the options are invalid or a benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .include(CoreBenchmarks.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+  /**
+   * Writes the CSV for this combination of parameters, and parses and loads it once for the
+   * benchmarks that start from parsed or loaded data.
+   * @throws IOException if the CSV cannot be written or read
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    csv = writeCsv(rows, farms);
+    lines = new String[LINES];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = row(i, farms);
+    }
+    parsed = new FarmParser(csv).parseFile();
+    fc = new FarmCollection(csv);
+    first = fc.getFarmCollection().get(0);
+  }
+
+  /**
+   * Deletes the CSV.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    csv.delete();
+  }
+
+  /**
+   * Parses the whole CSV into MilkStats.
+   * @return the MilkStats
+   * @throws IOException if the CSV cannot be read
+   */
+  @Benchmark
+  public List<MilkStat> parseFile() throws IOException {
+    return new FarmParser(csv).parseFile();
+  }
+
+  /**
+   * Parses single lines with the strict parser. Timed per line.
+   * @return the sum of the weights parsed
+   */
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public long strToMilkStat() {
+    long sum = 0;
+    for (String line : lines) {
+      sum += FarmParser.strToMilkStat(line).getWeight();
+    }
+    return sum;
+  }
+
+  /**
+   * Parses single lines with the lenient parser. Timed per line.
+   * @return the sum of the weights parsed
+   */
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public long parseLine() {
+    ParseErrors errors = new ParseErrors(csv);
+    long sum = 0;
+    for (int i = 0; i < lines.length; i++) {
+      sum += FarmParser.parseLine(lines[i], i + 2, errors).getWeight();
+    }
+    return sum;
+  }
+
+  /**
+   * Loads the whole CSV into a new FarmCollection.
+   * @return the FarmCollection
+   * @throws IOException if the CSV cannot be read
+   */
+  @Benchmark
+  public FarmCollection addFile() throws IOException {
+    return new FarmCollection(csv);
+  }
+
+  /**
+   * Loads the whole CSV into a new FarmCollection with the memory-mapped parser.
+   * @return the FarmCollection
+   * @throws IOException if the CSV cannot be read
+   */
+  @Benchmark
+  public FarmCollection addMappedFile() throws IOException {
+    FarmCollection mapped = new FarmCollection();
+    mapped.addMappedFile(csv);
+    return mapped;
+  }
+
+  /**
+   * Adds every parsed MilkStat to a new FarmCollection.
+   * @return the FarmCollection
+   */
+  @Benchmark
+  public FarmCollection addMilkStat() {
+    FarmCollection added = new FarmCollection();
+    for (MilkStat ms : parsed) {
+      added.addMilkStat(ms);
+    }
+    return added;
+  }
+
+  /**
+   * Sums every month of every farm.
+   * @return the total of every month
+   */
+  @Benchmark
+  public long sumOfWeightInMonth() {
+    long sum = 0;
+    for (Farm f : fc.getFarmCollection()) {
+      for (FarmYear fy : f.getYearList()) {
+        for (int month = 0; month < 12; month++) {
+          sum += fy.sumOfWeightInMonth(month);
+        }
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Builds the data of the report of one farm's year.
+   * @return the report
+   */
+  @Benchmark
+  public MilkReport farmReport() {
+    return MilkReport.farmReport(first, YEAR);
+  }
+
+  /**
+   * Builds the data of the report of one farm's month.
+   * @return the report
+   */
+  @Benchmark
+  public MilkReport monthlyFarmReport() {
+    return MilkReport.monthlyFarmReport(first, YEAR, 0);
+  }
+
+  /**
+   * Builds the data of the report of every farm's year.
+   * @return the report
+   */
+  @Benchmark
+  public MilkReport farmCollectionReport() {
+    return MilkReport.farmCollectionReport(fc, YEAR);
+  }
+
+  /**
+   * Builds the data of the report of every farm's month.
+   * @return the report
+   */
+  @Benchmark
+  public MilkReport monthlyFarmCollectionReport() {
+    return MilkReport.monthlyFarmCollectionReport(fc, YEAR, 0);
+  }
+
+  /**
+   * Writes a temporary CSV of the given size, with every farm reporting once per day.
+   * @param rows the number of rows to write
+   * @param farms the number of distinct farms
+   * @return the CSV
+   * @throws IOException if the CSV cannot be written
+   */
+  private static File writeCsv(int rows, int farms) throws IOException {
+    File csv = File.createTempFile("milk-bench", ".csv");
+    try (BufferedWriter out = new BufferedWriter(new FileWriter(csv))) {
+      out.write("date,farm_id,weight\n");
+      for (int i = 0; i < rows; i++) {
+        out.write(row(i, farms));
+        out.write('\n');
+      }
+    }
+    return csv;
+  }
+
+  /**
+   * Builds the text of one row. Rows cycle through every farm, one calendar day at a time,
+   * staying within YEAR by wrapping after its last day.
+   * @param i the index of the row
+   * @param farms the number of distinct farms
+   * @return the row, without a line break
+   */
+  private static String row(int i, int farms) {
+    LocalDate date = LocalDate.ofYearDay(YEAR, (i / farms) % Year.of(YEAR).length() + 1);
+    int weight = 1000 + new SplittableRandom(i).nextInt(9000);
+    return YEAR + "-" + date.getMonthValue() + "-" + date.getDayOfMonth() + ",Farm " + (i % farms)
+        + "," + weight;
+  }
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import application.FarmCollection;
+import application.MilkStat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Measures how long FarmCollection takes to ingest MilkStats as the number of farms grows. Every
+ * farm gets the same number of rows, so if lookups are constant time the time per row stays flat
+ * and the total time grows linearly with the farm count.
+ */
+public class IngestBenchmark {
+  private static final int[] FARM_COUNTS = {500, 1000, 2000, 4000, 8000};
+  private static final int DAYS = 28; // rows per farm
+  private static final int YEARS = 3; // spread rows over several years to exercise the year index
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 5;
+  
+  /**
+   * Runs the benchmark and prints one line per farm count.
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    System.out.println("farms\trows\tms\tns/row");
+    for (int farms : FARM_COUNTS) {
+      MilkStat[] rows = buildRows(farms);
+      for (int round = 0; round < WARMUP_ROUNDS; round++) {
+        ingest(rows);
+      }
+      
+      long best = Long.MAX_VALUE;
+      for (int round = 0; round < MEASURED_ROUNDS; round++) {
+        best = Math.min(best, ingest(rows));
+      }
+      System.out.printf("%d\t%d\t%.1f\t%.1f%n", farms, rows.length, best / 1e6,
+          (double) best / rows.length);
+    }
+  }
+  
+  /**
+   * Adds every row to a new FarmCollection.
+   * @param rows the MilkStats to be added
+   * @return the time taken, in nanoseconds
+   */
+  private static long ingest(MilkStat[] rows) {
+    long start = System.nanoTime();
+    FarmCollection fc = new FarmCollection();
+    for (MilkStat ms : rows) {
+      fc.addMilkStat(ms);
+    }
+    long elapsed = System.nanoTime() - start;
+    if (fc.getFarmCollection().isEmpty()) {
+      throw new IllegalStateException("Nothing was ingested.");
+    }
+    return elapsed;
+  }
+  
+  /**
+   * Builds rows ordered the way a CSV export is: by date, then by farm.
+   * @param farms the number of distinct farms
+   * @return the rows
+   */
+  private static MilkStat[] buildRows(int farms) {
+    String[] farmIds = new String[farms];
+    for (int f = 0; f < farms; f++) {
+      farmIds[f] = "Farm " + f;
+    }
+    
+    MilkStat[] rows = new MilkStat[farms * DAYS];
+    int i = 0;
+    for (int day = 0; day < DAYS; day++) {
+      Calendar date = new GregorianCalendar(2019 - day % YEARS, day % 12, day + 1);
+      for (int f = 0; f < farms; f++) {
+        rows[i++] = new MilkStat(date, farmIds[f], 5000 + (f * 31 + day * 17) % 4000);
+      }
+    }
+    return rows;
+  }
+}
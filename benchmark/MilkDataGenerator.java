@@ -0,0 +1,240 @@
+package benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Generates monthly CSVs of milk weights in the format FarmParser reads: a header line followed by
+ * "YYYY-M-D,Farm N,weight" rows, one file per month named "YYYY-M.csv". Output depends only on the
+ * options given, so any dataset can be rebuilt exactly from its seed.
+ * 
+ * <p>Options, given as name=value arguments:
+ * <ul>
+ * <li>out: the directory to write to (default "data/generated")</li>
+ * <li>farms: the number of farms (default 100)</li>
+ * <li>start: the first year (default 2019)</li>
+ * <li>years: the number of years (default 1)</li>
+ * <li>missing: the chance a farm skips a day, from 0 to 1 (default 0)</li>
+ * <li>duplicates: the chance a farm reports a day twice, from 0 to 1 (default 0)</li>
+ * <li>rows: the most rows to write in total; 0 for no limit (default 0)</li>
+ * <li>seed: the seed for every random choice (default 1)</li>
+ * </ul>
+ */
+public class MilkDataGenerator {
+  private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int MIN_BASE_WEIGHT = 3000; // the smallest typical daily weight of a farm
+  private static final int BASE_WEIGHT_RANGE = 6000; // the spread of typical daily weights
+  private static final int DAILY_VARIATION = 500; // how far a day strays from the farm's typical
+  private File outDir;
+  private int farms;
+  private int startYear;
+  private int years;
+  private double missing;
+  private double duplicates;
+  private long maxRows;
+  private long seed;
+  private byte[] line = new byte[64]; // reused for every row, so writing rows does not allocate
+  
+  /**
+   * Constructs a new MilkDataGenerator.
+   * @param outDir the directory to write to
+   * @param farms the number of farms
+   * @param startYear the first year
+   * @param years the number of years
+   * @param missing the chance a farm skips a day
+   * @param duplicates the chance a farm reports a day twice
+   * @param maxRows the most rows to write in total, or 0 for no limit
+   * @param seed the seed for every random choice
+   */
+  public MilkDataGenerator(File outDir, int farms, int startYear, int years, double missing,
+      double duplicates, long maxRows, long seed) {
+    this.outDir = outDir;
+    this.farms = farms;
+    this.startYear = startYear;
+    this.years = years;
+    this.missing = missing;
+    this.duplicates = duplicates;
+    this.maxRows = maxRows;
+    this.seed = seed;
+  }
+  
+  /**
+   * Generates a dataset from the command line.
+   * @param args options of the form name=value, described above
+   * @throws IOException if a file cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    File outDir = new File("data/generated");
+    int farms = 100;
+    int startYear = 2019;
+    int years = 1;
+    double missing = 0;
+    double duplicates = 0;
+    long maxRows = 0;
+    long seed = 1;
+    
+    for (String arg : args) {
+      String[] option = arg.split("=", 2);
+      if (option.length != 2) {
+        throw new IllegalArgumentException("Options must be of the form name=value: " + arg);
+      }
+      switch (option[0]) {
+        case "out": outDir = new File(option[1]); break;
+        case "farms": farms = Integer.parseInt(option[1]); break;
+        case "start": startYear = Integer.parseInt(option[1]); break;
+        case "years": years = Integer.parseInt(option[1]); break;
+        case "missing": missing = Double.parseDouble(option[1]); break;
+        case "duplicates": duplicates = Double.parseDouble(option[1]); break;
+        case "rows": maxRows = Long.parseLong(option[1]); break;
+        case "seed": seed = Long.parseLong(option[1]); break;
+        default: throw new IllegalArgumentException("Unknown option: " + option[0]);
+      }
+    }
+    
+    long start = System.nanoTime();
+    long rows = new MilkDataGenerator(outDir, farms, startYear, years, missing, duplicates,
+        maxRows, seed).generate();
+    System.out.printf("Wrote %,d rows to %s in %.1f s%n", rows, outDir,
+        (System.nanoTime() - start) / 1e9);
+  }
+  
+  /**
+   * Writes every monthly file.
+   * @return the number of rows written
+   * @throws IOException if a file cannot be written
+   */
+  public long generate() throws IOException {
+    if (!outDir.isDirectory() && !outDir.mkdirs()) {
+      throw new IOException("Cannot create " + outDir);
+    }
+    int[] baseWeights = new int[farms]; // each farm's typical daily weight
+    SplittableRandom farmRandom = new SplittableRandom(seed);
+    for (int f = 0; f < farms; f++) {
+      baseWeights[f] = MIN_BASE_WEIGHT + farmRandom.nextInt(BASE_WEIGHT_RANGE);
+    }
+    
+    long rows = 0;
+    for (int year = startYear; year < startYear + years; year++) {
+      for (int month = 0; month < 12; month++) {
+        if (maxRows > 0 && rows >= maxRows) {
+          return rows;
+        }
+        rows += writeMonth(year, month, baseWeights, rows);
+      }
+    }
+    return rows;
+  }
+  
+  /**
+   * Writes the file for one month. Every month draws from its own random stream derived from the
+   * seed, so a month's contents do not depend on how many rows came before it.
+   * @param year the year of the month
+   * @param month the month, from 0-11
+   * @param baseWeights each farm's typical daily weight
+   * @param written the number of rows already written by earlier months
+   * @return the number of rows written
+   * @throws IOException if the file cannot be written
+   */
+  private long writeMonth(int year, int month, int[] baseWeights, long written)
+      throws IOException {
+    SplittableRandom random = new SplittableRandom(seed * 31 + year * 12L + month);
+    int days = DAYS_IN_MONTH[month] + (month == 1 && isLeapYear(year) ? 1 : 0);
+    File file = new File(outDir, year + "-" + (month + 1) + ".csv");
+    long rows = 0;
+    
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+      out.write("date,farm_id,weight\n".getBytes(StandardCharsets.US_ASCII));
+      for (int day = 1; day <= days; day++) {
+        for (int f = 0; f < farms; f++) {
+          if (random.nextDouble() < missing) {
+            continue;
+          }
+          int copies = random.nextDouble() < duplicates ? 2 : 1;
+          for (int copy = 0; copy < copies; copy++) {
+            if (maxRows > 0 && written + rows >= maxRows) {
+              return rows;
+            }
+            int weight = baseWeights[f] - DAILY_VARIATION + random.nextInt(2 * DAILY_VARIATION);
+            writeRow(out, year, month + 1, day, f, weight);
+            rows++;
+          }
+        }
+      }
+    }
+    return rows;
+  }
+  
+  /**
+   * Writes one row, formatting its numbers by hand rather than building a String.
+   * @param out the stream to write to
+   * @param year the year of the row
+   * @param month the month of the row, from 1-12
+   * @param day the day of the row
+   * @param farm the number of the farm
+   * @param weight the weight of the row
+   * @throws IOException if the row cannot be written
+   */
+  private void writeRow(OutputStream out, int year, int month, int day, int farm, int weight)
+      throws IOException {
+    int i = putInt(year, 0);
+    line[i++] = '-';
+    i = putInt(month, i);
+    line[i++] = '-';
+    i = putInt(day, i);
+    line[i++] = ',';
+    line[i++] = 'F';
+    line[i++] = 'a';
+    line[i++] = 'r';
+    line[i++] = 'm';
+    line[i++] = ' ';
+    i = putInt(farm, i);
+    line[i++] = ',';
+    i = putInt(weight, i);
+    line[i++] = '\n';
+    out.write(line, 0, i);
+  }
+  
+  /**
+   * Writes the decimal digits of a non-negative int into the line buffer.
+   * @param value the value to write
+   * @param i the position to write at
+   * @return the position after the last digit
+   */
+  private int putInt(int value, int i) {
+    int end = i + digits(value);
+    for (int pos = end - 1; pos >= i; pos--) {
+      line[pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return end;
+  }
+  
+  /**
+   * Counts the decimal digits of a non-negative int.
+   * @param value the value to count
+   * @return the number of digits
+   */
+  private static int digits(int value) {
+    int count = 1;
+    while (value >= 10) {
+      value /= 10;
+      count++;
+    }
+    return count;
+  }
+  
+  /**
+   * Checks whether a year is a leap year in the Gregorian calendar.
+   * @param year the year to check
+   * @return true if the year has a February 29th; false otherwise
+   */
+  private static boolean isLeapYear(int year) {
+    return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+}